@@ -0,0 +1,172 @@
+package com.zbl.chain.sdk;
+
+import com.zbl.chain.sdk.cache.WriteCache;
+import com.zbl.chain.sdk.exceptions.OverloadException;
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import com.zbl.chain.sdk.pojos.response.BulkSubmitResult;
+import com.zbl.chain.sdk.pojos.response.CreateTransResponse;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 批量发送交易
+ * 同时进行中的交易数不超过maxInFlight，其中处于背书阶段的不超过maxProposalsInFlight；
+ * 窗口已满时submit阻塞调用线程，对生产者形成反压。
+ * 交易经SubmissionScheduler提交，同一businessId串行并重试MVCC冲突；背书被限流器拒绝时退避重发，
+ * 同时把背书窗口收缩到限流器的当前上限，之后每次背书成功归还一个名额
+ */
+public class BulkSubmitter {
+
+    private final ZblClient client;
+    private final int maxProposalsInFlight;
+    private final int maxInFlight;
+    private final Semaphore proposalPermits;
+    private final Semaphore inFlightPermits;
+    /**
+     * 因过载收回的背书名额，由this保护
+     */
+    private int retiredProposalPermits;
+
+    public BulkSubmitter(ZblClient client, int maxProposalsInFlight, int maxInFlight) {
+        if (maxProposalsInFlight < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("in-flight limits must be positive");
+        }
+        this.client = client;
+        this.maxProposalsInFlight = maxProposalsInFlight;
+        this.maxInFlight = maxInFlight;
+        this.proposalPermits = new Semaphore(maxProposalsInFlight);
+        this.inFlightPermits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * 发送全部交易并等待完成
+     *
+     * @return 每笔交易的结果，顺序与输入一致
+     */
+    public List<BulkSubmitResult> submitAll(Iterable<CreateTransPayload> payloads) throws InterruptedException {
+        List<BulkSubmitResult> results = new ArrayList<>();
+        submitAll(payloads, result -> {
+            synchronized (results) {
+                results.add(result);
+            }
+        });
+        results.sort(Comparator.comparingLong(BulkSubmitResult::getIndex));
+        return results;
+    }
+
+    /**
+     * 发送全部交易，每笔交易完成时在完成线程上回调consumer，全部完成后返回
+     */
+    public void submitAll(Iterable<CreateTransPayload> payloads, Consumer<BulkSubmitResult> consumer) throws InterruptedException {
+        long index = 0;
+        for (CreateTransPayload payload : payloads) {
+            submit(payload, index++, consumer);
+        }
+        awaitIdle();
+    }
+
+    /**
+     * 发送一笔交易，窗口已满时阻塞直到有交易完成
+     * 返回的future总是正常完成，失败信息在结果的error中
+     */
+    public CompletableFuture<BulkSubmitResult> submit(CreateTransPayload payload, long index) throws InterruptedException {
+        return submit(payload, index, null);
+    }
+
+    /**
+     * consumer在释放窗口之前调用，保证awaitIdle返回时所有回调都已执行
+     */
+    private CompletableFuture<BulkSubmitResult> submit(CreateTransPayload payload, long index,
+                                                       Consumer<BulkSubmitResult> consumer) throws InterruptedException {
+        inFlightPermits.acquire();
+        try {
+            proposalPermits.acquire();
+        } catch (InterruptedException e) {
+            inFlightPermits.release();
+            throw e;
+        }
+
+        WriteCache.Entry write = client.trackWrite(payload);
+        AtomicBoolean proposing = new AtomicBoolean(true);
+        Runnable endorsed = () -> {
+            if (proposing.compareAndSet(true, false)) {
+                proposalPermits.release();
+            }
+        };
+        CompletableFuture<CreateTransResponse> sent;
+        try {
+            SubmissionScheduler scheduler = client.getSubmissionScheduler();
+            sent = scheduler.submit(payload.getBusinessId(), p -> {
+                CompletableFuture<Collection<ProposalResponse>> endorsement =
+                        scheduler.whileOverloaded(() -> client.endorseAsync(p), this::shrinkProposalWindow);
+                endorsement.whenComplete((r, e) -> {
+                    if (e == null) {
+                        growProposalWindow();
+                    }
+                    endorsed.run();
+                });
+                return endorsement.thenCompose(client::commitAsync);
+            }, payload);
+        } catch (RuntimeException e) {
+            endorsed.run();
+            inFlightPermits.release();
+            client.settleWrite(write, null, e);
+            throw e;
+        }
+
+        return sent.handle((response, e) -> {
+            endorsed.run();
+            BulkSubmitResult result = new BulkSubmitResult(index, payload, response, unwrap(e));
+            client.settleWrite(write, null == response ? null : response.getData().getTxID(), e);
+            try {
+                if (consumer != null) {
+                    consumer.accept(result);
+                }
+            } finally {
+                inFlightPermits.release();
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 把背书窗口缩小到限流器当前的上限，只收回空闲的名额
+     */
+    private synchronized void shrinkProposalWindow(OverloadException e) {
+        int target = Math.max(1, Math.min(maxProposalsInFlight, e.getLimit()));
+        while (maxProposalsInFlight - retiredProposalPermits > target && proposalPermits.tryAcquire()) {
+            retiredProposalPermits++;
+        }
+    }
+
+    private synchronized void growProposalWindow() {
+        if (retiredProposalPermits > 0) {
+            retiredProposalPermits--;
+            proposalPermits.release();
+        }
+    }
+
+    /**
+     * 等待所有已提交的交易完成
+     */
+    public void awaitIdle() throws InterruptedException {
+        inFlightPermits.acquire(maxInFlight);
+        inFlightPermits.release(maxInFlight);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
@@ -0,0 +1,185 @@
+package com.zbl.chain.sdk;
+
+import com.zbl.chain.sdk.event.CommitTracker;
+import com.zbl.chain.sdk.utils.FabricUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.exception.CryptoException;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内共享的HFClient/Channel
+ * 同一机构、通道、用户只建立一次连接并初始化一次通道；按引用计数，最后一个使用者释放时关闭通道
+ */
+public class ChannelRegistry {
+    private static final Log logger = LogFactory.getLog(ChannelRegistry.class);
+
+    private static final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService RETIRE_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "zbl-channel-retire");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ChannelRegistry() {
+    }
+
+    /**
+     * 获取共享通道的使用权，使用完毕后必须调用Lease.close()
+     */
+    public static Lease acquire(String channelID, FabricOrg org, FabricConfig config) {
+        final String key = key(channelID, org);
+        Entry entry = entries.compute(key, (k, existing) -> {
+            Entry e = existing == null ? new Entry(k, channelID, org, config) : existing;
+            e.refCount++;
+            return e;
+        });
+        return new Lease(entry);
+    }
+
+    private static String key(String channelID, FabricOrg org) {
+        String user = org.getPeerAdmin() == null ? null : org.getPeerAdmin().getName();
+        return org.getName() + "@" + org.getRevision() + "|" + channelID + "|" + user;
+    }
+
+    private static void release(Entry entry) {
+        boolean[] last = new boolean[1];
+        entries.compute(entry.key, (k, existing) -> {
+            if (existing != entry) {
+                return existing;
+            }
+            if (--entry.refCount > 0) {
+                return entry;
+            }
+            last[0] = true;
+            return null;
+        });
+        // 关闭通道涉及网络I/O，不能在compute持有的锁内进行
+        if (last[0]) {
+            entry.shutdown();
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String channelID;
+        private final FabricOrg org;
+        private final FabricConfig config;
+        // guarded by ChannelRegistry.entries.compute
+        private int refCount;
+        private volatile HFClient hfClient;
+        private volatile Channel channel;
+        // guarded by this
+        private boolean closed;
+
+        private Entry(String key, String channelID, FabricOrg org, FabricConfig config) {
+            this.key = key;
+            this.channelID = channelID;
+            this.org = org;
+            this.config = config;
+        }
+
+        private HFClient getHfClient() throws CryptoException, InvalidArgumentException {
+            HFClient client = hfClient;
+            if (client == null) {
+                synchronized (this) {
+                    if (hfClient == null) {
+                        hfClient = FabricUtils.getClient(org.getPeerAdmin());
+                    }
+                    client = hfClient;
+                }
+            }
+            return client;
+        }
+
+        private Channel getChannel() throws Exception {
+            Channel ch = channel;
+            if (ch == null) {
+                synchronized (this) {
+                    if (closed) {
+                        throw new IllegalStateException("shared channel " + key + " is closed");
+                    }
+                    if (channel == null) {
+                        HFClient client = getHfClient();
+                        try {
+                            channel = FabricUtils.getExistingChannel(channelID, org, client, config);
+                        } catch (Exception e) {
+                            // 丢弃初始化到一半的通道，下次重新创建
+                            Channel partial = client.getChannel(channelID);
+                            if (partial != null) {
+                                partial.shutdown(true);
+                            }
+                            throw e;
+                        }
+                    }
+                    ch = channel;
+                }
+            }
+            return ch;
+        }
+
+        /**
+         * 等待进行中的初始化结束后关闭，之后不再初始化通道
+         */
+        private void shutdown() {
+            Channel ch;
+            synchronized (this) {
+                closed = true;
+                ch = channel;
+            }
+            if (ch != null) {
+                logger.info(String.format("Shutting down shared channel %s", key));
+                CommitTracker.remove(ch);
+                LaneScheduler.remove(ch);
+                ch.shutdown(true);
+            }
+        }
+    }
+
+    /**
+     * 共享通道的一次使用权
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public HFClient getHfClient() throws CryptoException, InvalidArgumentException {
+            return entry.getHfClient();
+        }
+
+        /**
+         * 首次调用时初始化通道，并发调用者等待同一次初始化
+         */
+        public Channel getChannel() throws Exception {
+            return entry.getChannel();
+        }
+
+        /**
+         * 延迟释放，等待已发出的交易在旧通道上完成
+         */
+        public void closeAfter(long delay, TimeUnit unit) {
+            RETIRE_TIMER.schedule(this::close, delay, unit);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(entry);
+            }
+        }
+    }
+}
@@ -6,15 +6,26 @@ import com.zbl.chain.sdk.utils.FabricUtils;
 import com.zbl.chain.sdk.utils.ProviderUserUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.util.encoders.Hex;
 import org.hyperledger.fabric.sdk.helper.Utils;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,83 +38,145 @@ public class FabricConfig {
     private static final String INVOKEWAITTIME = "org.hyperledger.fabric.sdk.InvokeWaitTime";
     private static final String DEPLOYWAITTIME = "org.hyperledger.fabric.sdk.DeployWaitTime";
     private static final String PROPOSALWAITTIME = "org.hyperledger.fabric.sdk.ProposalWaitTime";
+    private static final String MAXPROPOSALSINFLIGHT = "org.hyperledger.fabric.sdk.MaxProposalsInFlight";
+    private static final String MAXTRANSACTIONSINFLIGHT = "org.hyperledger.fabric.sdk.MaxTransactionsInFlight";
+    private static final String MAXBATCHSIZE = "org.hyperledger.fabric.sdk.MaxBatchSize";
+    private static final String MAXQUERIESINFLIGHT = "org.hyperledger.fabric.sdk.MaxQueriesInFlight";
+    private static final String TRANSACTIONCACHESIZE = "org.hyperledger.fabric.sdk.TransactionCacheSize";
+    private static final String TRANSACTIONCACHEBLOCKFILL = "org.hyperledger.fabric.sdk.TransactionCacheBlockFill";
+    private static final String WRITECACHESIZE = "org.hyperledger.fabric.sdk.WriteCacheSize";
+    private static final String WRITECACHETTL = "org.hyperledger.fabric.sdk.WriteCacheTtl";
+    private static final String SUBMISSIONSTRIPES = "org.hyperledger.fabric.sdk.SubmissionStripes";
+    private static final String MAXCOMMITATTEMPTS = "org.hyperledger.fabric.sdk.MaxCommitAttempts";
+    private static final String RETRYBACKOFF = "org.hyperledger.fabric.sdk.RetryBackoff";
+    private static final String RETRYBUDGETPERCENT = "org.hyperledger.fabric.sdk.RetryBudgetPercent";
     private static final String INTEGRATION_ORG = "org.hyperledger.fabric.sdk.integration.org.";
     private static final Pattern orgPat = Pattern.compile("^" + Pattern.quote(INTEGRATION_ORG) + "([^\\.]+)\\.mspid$");
 
     private static final String INTEGRATIONTESTSTLS = "org.hyperledger.fabric.sdk.tls";
 
-    private static final Properties sdkProperties = new Properties();
+    private static final String CONFIGHOTRELOAD = "org.hyperledger.fabric.sdk.ConfigHotReload";
+    private static final String TLSSESSIONRESUMPTION = "org.hyperledger.fabric.sdk.TlsSessionResumption";
 
-    private boolean runningTLS;
-    private boolean runningFabricCATLS;
-    private boolean runningFabricTLS;
-    private static FabricConfig config;
     private static final String CERT_PATH = "config/channel";
-    private static final HashMap<String, FabricOrg> sampleOrgs = new HashMap<>();
+    private static final ConcurrentHashMap<String, File> skFiles = new ConcurrentHashMap<>();
+
+    private final File configFile;
+    private final AtomicLong revisions = new AtomicLong();
+    // 只整体替换，不修改，读取方无需加锁
+    private volatile Snapshot snapshot;
+    private Thread watcher;
 
     private FabricConfig() {
+        configFile = new File(DEFAULT_CONFIG).getAbsoluteFile();
+        Snapshot loaded;
         try {
-            File loadFile = new File(DEFAULT_CONFIG).getAbsoluteFile();
-            FileInputStream configProps = new FileInputStream(loadFile);
-            sdkProperties.load(configProps);
+            loaded = load(null);
+        } catch (IOException | RuntimeException e) {
+            logger.error(String.format("Failed to load %s", configFile), e);
+            loaded = new Snapshot(revisions.incrementAndGet(), new Properties(), Collections.emptyMap());
+        }
+        snapshot = loaded;
+        if (loaded.isHotReload()) {
+            startWatching();
+        }
+    }
 
-            runningTLS = Boolean.valueOf(sdkProperties.getProperty(INTEGRATIONTESTSTLS));
-            runningFabricCATLS = runningTLS;
-            runningFabricTLS = runningTLS;
+    private static class Holder {
+        private static final FabricConfig INSTANCE = new FabricConfig();
+    }
 
-            for (Map.Entry<Object, Object> x : sdkProperties.entrySet()) {
-                final String key = (String) x.getKey();
-                final String val = (String) x.getValue();
+    public static FabricConfig getInstance() {
+        return Holder.INSTANCE;
+    }
 
-                if (key.startsWith(INTEGRATION_ORG)) {
+    /**
+     * 当前配置快照，同一快照内的各项配置相互一致
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
 
-                    Matcher match = orgPat.matcher(key);
+    /**
+     * 重新读取配置文件并原子替换快照；定义未变化的组织沿用原对象及已加载的管理员用户和共享通道。
+     * 解析失败时保留原快照
+     */
+    public synchronized Snapshot reload() throws IOException {
+        Snapshot current = snapshot;
+        Snapshot next = load(current);
+        snapshot = next;
+        logger.info(String.format("Loaded configuration revision %d from %s", next.getRevision(), configFile));
+        return next;
+    }
 
-                    if (match.matches() && match.groupCount() == 1) {
-                        String orgName = match.group(1).trim();
-                        sampleOrgs.put(orgName, new FabricOrg(orgName, val.trim()));
+    private Snapshot load(Snapshot previous) throws IOException {
+        Properties properties = new Properties();
+        try (FileInputStream configProps = new FileInputStream(configFile)) {
+            properties.load(configProps);
+        }
+        final long revision = revisions.incrementAndGet();
+        final boolean runningFabricTLS = Boolean.valueOf(properties.getProperty(INTEGRATIONTESTSTLS));
 
-                    }
-                }
-            }
+        Map<String, FabricOrg> orgs = new HashMap<>();
+        for (Map.Entry<Object, Object> x : properties.entrySet()) {
+            final String key = (String) x.getKey();
+            final String val = (String) x.getValue();
 
-            for (Map.Entry<String, FabricOrg> org : sampleOrgs.entrySet()) {
-                final FabricOrg sampleOrg = org.getValue();
-                final String orgName = org.getKey();
+            if (key.startsWith(INTEGRATION_ORG)) {
+
+                Matcher match = orgPat.matcher(key);
+
+                if (match.matches() && match.groupCount() == 1) {
+                    String orgName = match.group(1).trim();
+                    orgs.put(orgName, new FabricOrg(orgName, val.trim()));
 
-                String peerNames = sdkProperties.getProperty(INTEGRATION_ORG + orgName + ".peer_locations");
-                String[] ps = peerNames.split("[ \t]*,[ \t]*");
-                for (String peer : ps) {
-                    String[] nl = peer.split("[ \t]*@[ \t]*");
-                    sampleOrg.addPeerLocation(nl[0], grpcTLSify(nl[1]));
                 }
+            }
+        }
+
+        for (Map.Entry<String, FabricOrg> org : orgs.entrySet()) {
+            final FabricOrg sampleOrg = org.getValue();
+            final String orgName = org.getKey();
 
-                final String domainName = sdkProperties.getProperty(INTEGRATION_ORG + orgName + ".domname");
+            String peerNames = properties.getProperty(INTEGRATION_ORG + orgName + ".peer_locations");
+            String[] ps = peerNames.split("[ \t]*,[ \t]*");
+            for (String peer : ps) {
+                String[] nl = peer.split("[ \t]*@[ \t]*");
+                sampleOrg.addPeerLocation(nl[0], grpcTLSify(nl[1], runningFabricTLS));
+            }
 
-                sampleOrg.setDomainName(domainName);
+            final String domainName = properties.getProperty(INTEGRATION_ORG + orgName + ".domname");
 
-                String ordererNames = sdkProperties.getProperty(INTEGRATION_ORG + orgName + ".orderer_locations");
-                ps = ordererNames.split("[ \t]*,[ \t]*");
-                for (String peer : ps) {
-                    String[] nl = peer.split("[ \t]*@[ \t]*");
-                    sampleOrg.addOrdererLocation(nl[0], grpcTLSify(nl[1]));
-                }
+            sampleOrg.setDomainName(domainName);
 
-//                String eventHubNames = sdkProperties.getProperty(INTEGRATION_ORG + orgName + ".eventhub_locations");
-//                ps = eventHubNames.split("[ \t]*,[ \t]*");
-//                for (String peer : ps) {
-//                    String[] nl = peer.split("[ \t]*@[ \t]*");
-//                    sampleOrg.addEventHubLocation(nl[0], grpcTLSify(nl[1]));
-//                }
-//                sampleOrg.setCALocation(sdkProperties.getProperty((INTEGRATIONTESTS_ORG + org.getKey() + ".ca_location")));
+            String ordererNames = properties.getProperty(INTEGRATION_ORG + orgName + ".orderer_locations");
+            ps = ordererNames.split("[ \t]*,[ \t]*");
+            for (String peer : ps) {
+                String[] nl = peer.split("[ \t]*@[ \t]*");
+                sampleOrg.addOrdererLocation(nl[0], grpcTLSify(nl[1], runningFabricTLS));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+
+//            String eventHubNames = properties.getProperty(INTEGRATION_ORG + orgName + ".eventhub_locations");
+//            ps = eventHubNames.split("[ \t]*,[ \t]*");
+//            for (String peer : ps) {
+//                String[] nl = peer.split("[ \t]*@[ \t]*");
+//                sampleOrg.addEventHubLocation(nl[0], grpcTLSify(nl[1], runningFabricTLS));
+//            }
+//            sampleOrg.setCALocation(properties.getProperty((INTEGRATIONTESTS_ORG + org.getKey() + ".ca_location")));
         }
 
+        for (Map.Entry<String, FabricOrg> org : orgs.entrySet()) {
+            FabricOrg existing = previous == null ? null : previous.getOrg(org.getKey());
+            if (org.getValue().sameDefinition(existing)) {
+                org.setValue(existing);
+            } else {
+                org.getValue().setRevision(revision);
+            }
+        }
+        return new Snapshot(revision, properties, orgs);
     }
 
-    private String grpcTLSify(String location) {
+    private static String grpcTLSify(String location, boolean runningFabricTLS) {
         location = location.trim();
         Exception e = Utils.checkGrpcUrl(location);
         if (e != null) {
@@ -114,60 +187,212 @@ public class FabricConfig {
 
     }
 
-    private String httpTLSify(String location) {
+    private static String httpTLSify(String location, boolean runningFabricCATLS) {
         location = location.trim();
 
         return runningFabricCATLS ?
                 location.replaceFirst("^http://", "https://") : location;
     }
 
+    /**
+     * 监听配置文件，文件变化后重新加载
+     */
+    public synchronized void startWatching() {
+        if (watcher != null) {
+            return;
+        }
+        final Path file = configFile.toPath();
+        final WatchService watchService;
+        try {
+            watchService = file.getFileSystem().newWatchService();
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.error(String.format("Failed to watch %s", file), e);
+            return;
+        }
+        watcher = new Thread(() -> watch(watchService, file), "zbl-config-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
 
-    public static FabricConfig getInstance() {
-        if (null == config) {
-            config = new FabricConfig();
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
         }
-        return config;
     }
 
-    public String getProperty(String property) {
-        String ret = sdkProperties.getProperty(property);
-        if (null == ret) {
-            logger.warn(String.format("No configuration value found for '%s'", property));
+    private void watch(WatchService watchService, Path file) {
+        try (WatchService ws = watchService) {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = ws.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= file.getFileName().equals(event.context());
+                }
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+                // 编辑器保存时会连续产生多个事件，稍等后合并为一次加载
+                Thread.sleep(200);
+                WatchKey pending = ws.poll();
+                if (pending != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                try {
+                    reload();
+                } catch (Exception e) {
+                    logger.error(String.format("Failed to reload %s, keeping revision %d", file, snapshot.getRevision()), e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.warn(String.format("Stopped watching %s", file), e);
         }
-        return ret;
+    }
+
+    public String getProperty(String property) {
+        return snapshot.getProperty(property);
     }
 
     public int getTransactionWaitTime() {
-        return Integer.parseInt(getProperty(INVOKEWAITTIME));
+        return snapshot.getTransactionWaitTime();
     }
 
     public int getDeployWaitTime() {
-        return Integer.parseInt(getProperty(DEPLOYWAITTIME));
+        return snapshot.getDeployWaitTime();
     }
 
 
     public long getProposalWaitTime() {
-        return Integer.parseInt(getProperty(PROPOSALWAITTIME));
+        return snapshot.getProposalWaitTime();
+    }
+
+    public int getMaxProposalsInFlight() {
+        return snapshot.maxProposalsInFlight;
+    }
+
+    public int getMaxTransactionsInFlight() {
+        return snapshot.maxTransactionsInFlight;
+    }
+
+    public int getMaxBatchSize() {
+        return snapshot.maxBatchSize;
+    }
+
+    public int getMaxQueriesInFlight() {
+        return snapshot.maxQueriesInFlight;
+    }
+
+    public int getTransactionCacheSize() {
+        return snapshot.transactionCacheSize;
+    }
+
+    /**
+     * 查询交易时是否把同一区块中的其他交易一并放入缓存，默认只缓存被查询的交易
+     */
+    public boolean isTransactionCacheBlockFill() {
+        return snapshot.transactionCacheBlockFill;
+    }
+
+    public int getWriteCacheSize() {
+        return snapshot.writeCacheSize;
+    }
+
+    /**
+     * 单位秒
+     */
+    public int getWriteCacheTtl() {
+        return snapshot.writeCacheTtl;
+    }
+
+    public int getSubmissionStripes() {
+        return snapshot.submissionStripes;
+    }
+
+    public int getMaxCommitAttempts() {
+        return snapshot.maxCommitAttempts;
+    }
+
+    /**
+     * 单位毫秒
+     */
+    public int getRetryBackoff() {
+        return snapshot.retryBackoff;
+    }
+
+    public int getRetryBudgetPercent() {
+        return snapshot.retryBudgetPercent;
     }
 
 
+    /**
+     * 并行初始化所有组织的管理员用户
+     */
     public void initOrgs() throws NoSuchAlgorithmException, NoSuchProviderException, InvalidKeySpecException, IOException {
-        Collection<FabricOrg> orgs = Collections.unmodifiableCollection(sampleOrgs.values());
+        Collection<FabricOrg> orgs = snapshot.getOrgs().values();
+
+        List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+        orgs.parallelStream().forEach(org -> {
+            try {
+                initOrg(org);
+            } catch (Exception e) {
+                errors.add(e);
+            }
+        });
+        if (!errors.isEmpty()) {
+            Exception e = errors.get(0);
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            } else if (e instanceof NoSuchAlgorithmException) {
+                throw (NoSuchAlgorithmException) e;
+            } else if (e instanceof NoSuchProviderException) {
+                throw (NoSuchProviderException) e;
+            } else if (e instanceof InvalidKeySpecException) {
+                throw (InvalidKeySpecException) e;
+            }
+            throw (RuntimeException) e;
+        }
+    }
 
-        for (FabricOrg org : orgs) {
-            final String orgName = org.getName();
-            final String domainName = org.getDomainName();
+    /**
+     * 只初始化指定组织的管理员用户，证书文件未变化时直接使用已解析的用户
+     */
+    public void initOrg(String name) throws NoSuchAlgorithmException, NoSuchProviderException, InvalidKeySpecException, IOException {
+        FabricOrg org = snapshot.getOrg(name);
+        if (null != org) {
+            initOrg(org);
+        }
+    }
 
-            File privateFileDir = new File(format("%s/crypto-config/peerOrganizations/%s/users/Admin@%s/msp/keystore", CERT_PATH, domainName, domainName));
-            File certificateFile = new File(format("%s/crypto-config/peerOrganizations/%s/users/Admin@%s/msp/signcerts/Admin@%s-cert.pem", CERT_PATH, domainName, domainName, domainName));
-            // peer admin 挂载证书
-            FabricUser peerOrgAdmin = ProviderUserUtil.getUser(orgName + "Admin", org.getMSPID(), FabricUtils.findFileSk(privateFileDir), certificateFile);
-            org.setPeerAdmin(peerOrgAdmin);
+    private void initOrg(FabricOrg org) throws NoSuchAlgorithmException, NoSuchProviderException, InvalidKeySpecException, IOException {
+        final String orgName = org.getName();
+        final String domainName = org.getDomainName();
+
+        File privateFileDir = new File(format("%s/crypto-config/peerOrganizations/%s/users/Admin@%s/msp/keystore", CERT_PATH, domainName, domainName));
+        File certificateFile = new File(format("%s/crypto-config/peerOrganizations/%s/users/Admin@%s/msp/signcerts/Admin@%s-cert.pem", CERT_PATH, domainName, domainName, domainName));
+        // peer admin 挂载证书
+        FabricUser peerOrgAdmin = ProviderUserUtil.getUser(orgName + "Admin", org.getMSPID(), findFileSk(privateFileDir), certificateFile);
+        synchronized (org) {
+            if (org.getPeerAdmin() != peerOrgAdmin) {
+                org.setPeerAdmin(peerOrgAdmin);
+            }
         }
     }
 
+    /**
+     * 按目录修改时间缓存私钥文件的查找结果，私钥更换后目录修改时间变化，重新查找
+     */
+    private static File findFileSk(File directory) {
+        String key = directory.getAbsolutePath() + "|" + directory.lastModified();
+        return skFiles.computeIfAbsent(key, k -> FabricUtils.findFileSk(directory));
+    }
+
     public FabricOrg getIntegrationSampleOrg(String name) {
-        return sampleOrgs.get(name);
+        return snapshot.getOrg(name);
     }
 
 
@@ -184,24 +409,11 @@ public class FabricConfig {
     }
 
     private Properties getEndPointProperties(final String type, final String name) {
-        final String domainName = getDomainName(name);
-        String crtpath = format("%s/crypto-config/%sOrganizations/%s/%ss/%s/tls/server.crt", CERT_PATH, type, domainName, type, name);
-        File cert = new File(crtpath);
-        if (!cert.exists()) {
-            throw new RuntimeException(String.format("Missing cert file for: %s. Could not find at location: %s", name,
-                    cert.getAbsolutePath()));
-        }
-
-        Properties ret = new Properties();
-        ret.setProperty("pemFile", cert.getAbsolutePath());
-        ret.setProperty("hostnameOverride", name);
-        ret.setProperty("sslProvider", "openSSL");
-        ret.setProperty("negotiationType", "TLS");
-        return ret;
+        return snapshot.getEndPointProperties(type, name);
     }
 
 
-    private String getDomainName(final String name) {
+    private static String getDomainName(final String name) {
         int dot = name.indexOf(".");
         if (-1 == dot) {
             return null;
@@ -211,4 +423,183 @@ public class FabricConfig {
     }
 
 
+    /**
+     * 不可变的配置快照，数值配置在加载时解析
+     */
+    public static final class Snapshot {
+        private final long revision;
+        private final Map<String, String> properties;
+        private final Map<String, FabricOrg> orgs;
+        private final boolean runningTLS;
+        private final Integer transactionWaitTime;
+        private final Integer deployWaitTime;
+        private final Integer proposalWaitTime;
+        private final int maxProposalsInFlight;
+        private final int maxTransactionsInFlight;
+        private final int maxBatchSize;
+        private final int maxQueriesInFlight;
+        private final int transactionCacheSize;
+        private final boolean transactionCacheBlockFill;
+        private final int writeCacheSize;
+        private final int writeCacheTtl;
+        private final int submissionStripes;
+        private final int maxCommitAttempts;
+        private final int retryBackoff;
+        private final int retryBudgetPercent;
+        private final boolean hotReload;
+        private final boolean tlsSessionResumption;
+        // 节点连接配置，证书只在首次使用时读取；证书更换后通过reload生效
+        private final ConcurrentHashMap<String, Properties> endPoints = new ConcurrentHashMap<>();
+        // 同一TLS CA证书只保留一份，key为证书内容的SHA-256
+        private final ConcurrentHashMap<String, byte[]> trustMaterial = new ConcurrentHashMap<>();
+
+        private Snapshot(long revision, Properties properties, Map<String, FabricOrg> orgs) {
+            Map<String, String> copy = new HashMap<>();
+            for (String name : properties.stringPropertyNames()) {
+                copy.put(name, properties.getProperty(name));
+            }
+            this.revision = revision;
+            this.properties = Collections.unmodifiableMap(copy);
+            this.orgs = Collections.unmodifiableMap(new HashMap<>(orgs));
+            this.runningTLS = Boolean.valueOf(copy.get(INTEGRATIONTESTSTLS));
+            this.transactionWaitTime = getIntProperty(INVOKEWAITTIME, null);
+            this.deployWaitTime = getIntProperty(DEPLOYWAITTIME, null);
+            this.proposalWaitTime = getIntProperty(PROPOSALWAITTIME, null);
+            this.maxProposalsInFlight = getIntProperty(MAXPROPOSALSINFLIGHT, 32);
+            this.maxTransactionsInFlight = getIntProperty(MAXTRANSACTIONSINFLIGHT, 256);
+            this.maxBatchSize = getIntProperty(MAXBATCHSIZE, 500);
+            this.maxQueriesInFlight = getIntProperty(MAXQUERIESINFLIGHT, 16);
+            this.transactionCacheSize = getIntProperty(TRANSACTIONCACHESIZE, 10000);
+            this.transactionCacheBlockFill = Boolean.valueOf(copy.get(TRANSACTIONCACHEBLOCKFILL));
+            this.writeCacheSize = getIntProperty(WRITECACHESIZE, 10000);
+            this.writeCacheTtl = getIntProperty(WRITECACHETTL, 300);
+            this.submissionStripes = getIntProperty(SUBMISSIONSTRIPES, 1024);
+            this.maxCommitAttempts = getIntProperty(MAXCOMMITATTEMPTS, 5);
+            this.retryBackoff = getIntProperty(RETRYBACKOFF, 50);
+            this.retryBudgetPercent = getIntProperty(RETRYBUDGETPERCENT, 20);
+            this.hotReload = Boolean.valueOf(copy.get(CONFIGHOTRELOAD));
+            this.tlsSessionResumption = Boolean.valueOf(copy.get(TLSSESSIONRESUMPTION));
+        }
+
+        /**
+         * 取值不是整数时记录错误并使用默认值，不影响其他配置项
+         */
+        private Integer getIntProperty(String property, Integer defaultValue) {
+            String ret = properties.get(property);
+            if (null == ret) {
+                return defaultValue;
+            }
+            try {
+                return Integer.valueOf(ret.trim());
+            } catch (NumberFormatException e) {
+                logger.error(String.format("Invalid integer %s=%s, using %s", property, ret, defaultValue));
+                return defaultValue;
+            }
+        }
+
+        private static int required(Integer value, String property) {
+            if (null == value) {
+                throw new IllegalStateException(String.format("No configuration value found for '%s'", property));
+            }
+            return value;
+        }
+
+        public long getRevision() {
+            return revision;
+        }
+
+        public String getProperty(String property) {
+            String ret = properties.get(property);
+            if (null == ret) {
+                logger.warn(String.format("No configuration value found for '%s'", property));
+            }
+            return ret;
+        }
+
+        public Map<String, FabricOrg> getOrgs() {
+            return orgs;
+        }
+
+        public FabricOrg getOrg(String name) {
+            return orgs.get(name);
+        }
+
+        public boolean isRunningTLS() {
+            return runningTLS;
+        }
+
+        public boolean isHotReload() {
+            return hotReload;
+        }
+
+        public boolean isTlsSessionResumption() {
+            return tlsSessionResumption;
+        }
+
+        /**
+         * 节点的TLS连接配置，返回副本，调用方可以修改
+         */
+        public Properties getEndPointProperties(final String type, final String name) {
+            Properties ret = new Properties();
+            ret.putAll(endPoints.computeIfAbsent(type + "|" + name, k -> resolveEndPoint(type, name)));
+            return ret;
+        }
+
+        private Properties resolveEndPoint(final String type, final String name) {
+            final String domainName = getDomainName(name);
+            String tlsDir = format("%s/crypto-config/%sOrganizations/%s/%ss/%s/tls", CERT_PATH, type, domainName, type, name);
+            // 信任签发节点证书的TLS CA，同一组织的节点共用；旧目录只有server.crt时仍按节点证书信任
+            File cert = new File(tlsDir, "ca.crt");
+            if (!cert.exists()) {
+                cert = new File(tlsDir, "server.crt");
+            }
+            if (!cert.exists()) {
+                throw new RuntimeException(String.format("Missing cert file for: %s. Could not find at location: %s", name,
+                        cert.getAbsolutePath()));
+            }
+            byte[] pem;
+            try {
+                pem = Files.readAllBytes(cert.toPath());
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Failed to read cert file %s", cert.getAbsolutePath()), e);
+            }
+
+            Properties ret = new Properties();
+            ret.put("pemBytes", trustMaterial.computeIfAbsent(sha256(pem), k -> pem));
+            ret.setProperty("hostnameOverride", name);
+            // 所带netty版本中只有JDK实现的客户端SslContext缓存会话，断线重连时可以恢复会话而不必完整握手
+            ret.setProperty("sslProvider", tlsSessionResumption ? "JDK" : "openSSL");
+            ret.setProperty("negotiationType", "TLS");
+            return ret;
+        }
+
+        private static String sha256(byte[] data) {
+            try {
+                return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(data));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * 单位秒
+         */
+        public int getTransactionWaitTime() {
+            return required(transactionWaitTime, INVOKEWAITTIME);
+        }
+
+        /**
+         * 单位秒
+         */
+        public int getDeployWaitTime() {
+            return required(deployWaitTime, DEPLOYWAITTIME);
+        }
+
+        /**
+         * 单位毫秒
+         */
+        public long getProposalWaitTime() {
+            return required(proposalWaitTime, PROPOSALWAITTIME);
+        }
+    }
 }
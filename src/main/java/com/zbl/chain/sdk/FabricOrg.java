@@ -18,6 +18,8 @@ public class FabricOrg {
     private FabricUser admin;
     private FabricUser peerAdmin;
     private String domainName;
+    // 所属配置快照的版本，热加载替换组织后共享通道按版本区分
+    private long revision;
 
     public FabricOrg(String name, String mspid) {
         this.name = name;
@@ -125,4 +127,24 @@ public class FabricOrg {
     public String getDomainName() {
         return domainName;
     }
+
+    long getRevision() {
+        return revision;
+    }
+
+    void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    /**
+     * MSP、域名、peer及orderer地址是否都相同
+     */
+    boolean sameDefinition(FabricOrg other) {
+        return other != null
+                && Objects.equals(mspid, other.mspid)
+                && Objects.equals(domainName, other.domainName)
+                && peerLocations.equals(other.peerLocations)
+                && ordererLocations.equals(other.ordererLocations)
+                && eventHubLocations.equals(other.eventHubLocations);
+    }
 }
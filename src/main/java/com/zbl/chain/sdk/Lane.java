@@ -0,0 +1,28 @@
+package com.zbl.chain.sdk;
+
+/**
+ * 提交通道的优先级
+ * weight为加权公平调度的权重；headroom为该通道发送时需要保留的全局空闲名额比例，
+ * 低优先级通道在全局并发接近上限时让出名额给高优先级通道
+ */
+public enum Lane {
+    INTERACTIVE(8, 0),
+    NORMAL(4, 1.0 / 16),
+    BULK(1, 1.0 / 8);
+
+    private final int weight;
+    private final double headroom;
+
+    Lane(int weight, double headroom) {
+        this.weight = weight;
+        this.headroom = headroom;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public double getHeadroom() {
+        return headroom;
+    }
+}
@@ -0,0 +1,213 @@
+package com.zbl.chain.sdk;
+
+import com.zbl.chain.sdk.exceptions.OverloadException;
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import com.zbl.chain.sdk.pojos.response.CreateTransResponse;
+import com.zbl.chain.sdk.utils.FabricUtils;
+import org.hyperledger.fabric.sdk.Channel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按优先级通道调度交易发送
+ * 各通道有自己的未完成交易上限和等待队列，共享全局并发上限；有空闲名额时按权重做步长调度（stride scheduling），
+ * 权重越大的通道分到的名额越多。未指定上限的通道按权重占最高权重的比例分得全局容量；
+ * 低优先级通道只能使用扣除headroom后的名额，因此批量导入可以在自己的上限内用满空闲容量，但交互通道始终有名额可用。
+ * 通过of(channel)获取的调度器由共用同一通道的所有客户端共享，各客户端的交易在同一份容量内竞争
+ */
+public class LaneScheduler {
+
+    private static final long STRIDE = 1 << 20;
+
+    private static final ConcurrentMap<Channel, LaneScheduler> schedulers = new ConcurrentHashMap<>();
+
+    private static class Task {
+        private final ZblClient client;
+        private final CreateTransPayload payload;
+        private final CompletableFuture<CreateTransResponse> result = new CompletableFuture<>();
+
+        Task(ZblClient client, CreateTransPayload payload) {
+            this.client = client;
+            this.payload = payload;
+        }
+    }
+
+    private static class LaneState {
+        private final Lane lane;
+        private final int quota;
+        private final int reserved;
+        private final ArrayDeque<Task> queue = new ArrayDeque<>();
+        private int inFlight;
+        private long pass;
+
+        LaneState(Lane lane, int quota, int reserved) {
+            this.lane = lane;
+            this.quota = quota;
+            this.reserved = reserved;
+        }
+    }
+
+    private final ZblClient client;
+    private final int capacity;
+    private final int maxQueued;
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+    private int inFlight;
+    private long globalPass;
+    /**
+     * 等待调度的次数，保证同一时刻只有一个线程在派发；已完成的发送在派发时同步回调，不会递归进入dispatch
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    /**
+     * 获取通道共享的调度器，容量为MaxTransactionsInFlight，每个通道最多等待其16倍的交易
+     */
+    public static LaneScheduler of(Channel channel) {
+        return schedulers.computeIfAbsent(channel, ch -> {
+            int capacity = ZblClient.getConfig().getMaxTransactionsInFlight();
+            return new LaneScheduler(null, capacity, Collections.<Lane, Integer>emptyMap(), capacity * 16);
+        });
+    }
+
+    /**
+     * 通道关闭时移除共享的调度器
+     */
+    public static void remove(Channel channel) {
+        schedulers.remove(channel);
+    }
+
+    /**
+     * @param client    submit(payload, lane)使用的客户端，只通过submit(client, payload, lane)提交时可以为null
+     * @param capacity  全局未完成交易上限
+     * @param quotas    各通道未完成交易上限，未指定的通道上限为capacity * 权重 / 最高权重，至少为1
+     * @param maxQueued 每个通道最多等待的交易数，超过时直接拒绝
+     */
+    public LaneScheduler(ZblClient client, int capacity, Map<Lane, Integer> quotas, int maxQueued) {
+        if (capacity < 1 || maxQueued < 0) {
+            throw new IllegalArgumentException("capacity must be positive and maxQueued must not be negative");
+        }
+        this.client = client;
+        this.capacity = capacity;
+        this.maxQueued = maxQueued;
+        int maxWeight = 1;
+        for (Lane lane : Lane.values()) {
+            maxWeight = Math.max(maxWeight, lane.getWeight());
+        }
+        for (Lane lane : Lane.values()) {
+            Integer quota = quotas.get(lane);
+            int defaultQuota = Math.max(1, (int) ((long) capacity * lane.getWeight() / maxWeight));
+            lanes.put(lane, new LaneState(lane, null == quota ? defaultQuota : quota, (int) (capacity * lane.getHeadroom())));
+        }
+    }
+
+    /**
+     * 在指定通道发送交易
+     *
+     * @return 交易落块后完成；通道等待队列已满时以OverloadException结束
+     */
+    public CompletableFuture<CreateTransResponse> submit(CreateTransPayload payload, Lane lane) {
+        if (null == client) {
+            throw new IllegalStateException("shared lane scheduler requires the submitting client");
+        }
+        return submit(client, payload, lane);
+    }
+
+    /**
+     * 由指定客户端在指定通道发送交易
+     */
+    public CompletableFuture<CreateTransResponse> submit(ZblClient client, CreateTransPayload payload, Lane lane) {
+        Task task = new Task(client, payload);
+        synchronized (this) {
+            LaneState state = lanes.get(lane);
+            if (state.queue.size() >= maxQueued && !canDispatch(state)) {
+                return FabricUtils.failedFuture(new OverloadException(lane.name().toLowerCase() + " lane", state.quota));
+            }
+            if (state.queue.isEmpty() && state.inFlight == 0) {
+                // 空闲后重新加入的通道不能积攒之前的份额
+                state.pass = Math.max(state.pass, globalPass);
+            }
+            state.queue.add(task);
+        }
+        dispatch();
+        return task.result;
+    }
+
+    private boolean canDispatch(LaneState state) {
+        return state.inFlight < state.quota && inFlight < capacity - state.reserved;
+    }
+
+    private void dispatch() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            List<Task> ready = new ArrayList<>();
+            List<LaneState> readyLanes = new ArrayList<>();
+            synchronized (this) {
+                while (true) {
+                    LaneState next = null;
+                    for (LaneState state : lanes.values()) {
+                        if (!state.queue.isEmpty() && canDispatch(state) && (next == null || state.pass < next.pass)) {
+                            next = state;
+                        }
+                    }
+                    if (next == null) {
+                        break;
+                    }
+                    ready.add(next.queue.poll());
+                    readyLanes.add(next);
+                    next.inFlight++;
+                    inFlight++;
+                    globalPass = next.pass;
+                    next.pass += STRIDE / next.lane.getWeight();
+                }
+            }
+            for (int i = 0; i < ready.size(); i++) {
+                start(ready.get(i), readyLanes.get(i));
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void start(Task task, LaneState state) {
+        CompletableFuture<CreateTransResponse> sent;
+        try {
+            sent = task.client.sendTransactionAsync(task.payload);
+        } catch (RuntimeException e) {
+            sent = FabricUtils.failedFuture(e);
+        }
+        sent.whenComplete((response, e) -> {
+            synchronized (this) {
+                state.inFlight--;
+                inFlight--;
+            }
+            dispatch();
+            if (e == null) {
+                task.result.complete(response);
+            } else {
+                task.result.completeExceptionally(e);
+            }
+        });
+    }
+
+    public synchronized int getInFlight(Lane lane) {
+        return lanes.get(lane).inFlight;
+    }
+
+    public synchronized int getQueued(Lane lane) {
+        return lanes.get(lane).queue.size();
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
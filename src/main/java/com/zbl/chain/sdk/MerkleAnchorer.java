@@ -0,0 +1,211 @@
+package com.zbl.chain.sdk;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import com.zbl.chain.sdk.pojos.response.data.MerkleProof;
+import com.zbl.chain.sdk.utils.MerkleTree;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.TxReadWriteSetInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * merkle根锚定
+ * 按数量或时间窗口收集存证hash构建merkle树，只将根上链（businessId为"merkle:"+根），
+ * 每条存证得到包含证明及锚定交易txID，可用verifyProof对照可信的根或账本上的锚定交易校验
+ */
+public class MerkleAnchorer implements AutoCloseable {
+    private static final Log logger = LogFactory.getLog(MerkleAnchorer.class);
+
+    public static final String ROOT_BUSINESS_ID_PREFIX = "merkle:";
+
+    private final ZblClient client;
+    private final int maxLeaves;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private List<String> hashes = new ArrayList<>();
+    private List<CompletableFuture<MerkleProof>> futures = new ArrayList<>();
+    private ScheduledFuture<?> pendingFlush;
+    private boolean closed;
+
+    /**
+     * @param maxLeaves      单棵树最多叶子数，达到后立即锚定
+     * @param maxDelayMillis 第一条hash加入后最多等待的时间
+     */
+    public MerkleAnchorer(ZblClient client, int maxLeaves, long maxDelayMillis) {
+        if (maxLeaves < 1 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("maxLeaves must be positive and maxDelayMillis must not be negative");
+        }
+        this.client = client;
+        this.maxLeaves = maxLeaves;
+        this.maxDelayMillis = maxDelayMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "zbl-merkle-anchorer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 加入一条存证hash
+     *
+     * @return 锚定交易落块后完成的包含证明
+     */
+    public synchronized CompletableFuture<MerkleProof> add(String hash) {
+        if (closed) {
+            throw new IllegalStateException("anchorer is closed");
+        }
+        CompletableFuture<MerkleProof> future = new CompletableFuture<>();
+        hashes.add(hash);
+        futures.add(future);
+        if (hashes.size() >= maxLeaves) {
+            flush();
+        } else if (pendingFlush == null) {
+            pendingFlush = scheduler.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    /**
+     * 立即锚定当前窗口内的hash
+     */
+    public synchronized void flush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        if (hashes.isEmpty()) {
+            return;
+        }
+        anchor(hashes, futures);
+        hashes = new ArrayList<>();
+        futures = new ArrayList<>();
+    }
+
+    private void anchor(List<String> leaves, List<CompletableFuture<MerkleProof>> proofs) {
+        final MerkleTree tree;
+        try {
+            tree = new MerkleTree(leaves);
+        } catch (RuntimeException e) {
+            proofs.forEach(f -> f.completeExceptionally(e));
+            return;
+        }
+        CreateTransPayload payload = new CreateTransPayload();
+        payload.setBusinessId(ROOT_BUSINESS_ID_PREFIX + tree.getRoot());
+        payload.setHash(tree.getRoot());
+
+        client.sendTransactionAsync(payload).whenComplete((response, e) -> {
+            if (e != null) {
+                logger.warn(String.format("Failed to anchor merkle root %s of %d hashes", tree.getRoot(), tree.size()), e);
+                proofs.forEach(f -> f.completeExceptionally(e));
+                return;
+            }
+            String txID = response.getData().getTxID();
+            for (int i = 0; i < proofs.size(); i++) {
+                MerkleProof proof = tree.getProof(i);
+                proof.setTxID(txID);
+                proofs.get(i).complete(proof);
+            }
+        });
+    }
+
+    /**
+     * 校验存证hash包含在已锚定的merkle根中
+     * anchoredRoot必须来自可信来源（如本地保存的锚定记录），不能取自证明本身
+     */
+    public static boolean verifyProof(String hash, MerkleProof proof, String anchoredRoot) {
+        String root = computeRoot(hash, proof);
+        return root != null && anchoredRoot != null && root.equalsIgnoreCase(anchoredRoot);
+    }
+
+    /**
+     * 校验存证hash包含在证明所记录的锚定交易写入的merkle根中，参见verifyProof(ZblClient, String, MerkleProof, String)
+     */
+    public static boolean verifyProof(ZblClient client, String hash, MerkleProof proof) throws Exception {
+        return verifyProof(client, hash, proof, null == proof ? null : proof.getTxID());
+    }
+
+    /**
+     * 校验存证hash包含在锚定交易rootTxId写入的merkle根中：由hash及证明路径重新计算根，
+     * 按txID查询锚定交易，确认交易有效且在本链码中写入了"merkle:"+根。
+     * 任何客户端都能写入"merkle:"开头的key，只检查key是否存在不能证明锚定
+     */
+    public static boolean verifyProof(ZblClient client, String hash, MerkleProof proof, String rootTxId) throws Exception {
+        String root = computeRoot(hash, proof);
+        if (root == null || rootTxId == null) {
+            return false;
+        }
+        if (!client.queryTransaction(rootTxId).isValid()) {
+            return false;
+        }
+        BlockInfo block = client.getChannel().queryBlockByTransactionID(rootTxId);
+        for (BlockInfo.EnvelopeInfo envelopeInfo : block.getEnvelopeInfos()) {
+            if (rootTxId.equals(envelopeInfo.getTransactionID())
+                    && envelopeInfo.getType() == BlockInfo.EnvelopeType.TRANSACTION_ENVELOPE) {
+                return wroteRoot((BlockInfo.TransactionEnvelopeInfo) envelopeInfo, client.getChaincodeName(), root);
+            }
+        }
+        return false;
+    }
+
+    private static boolean wroteRoot(BlockInfo.TransactionEnvelopeInfo transaction, String chaincodeName, String root) {
+        String key = ROOT_BUSINESS_ID_PREFIX + root;
+        for (BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo action : transaction.getTransactionActionInfos()) {
+            TxReadWriteSetInfo rwsetInfo = action.getTxReadWriteSet();
+            if (rwsetInfo == null) {
+                continue;
+            }
+            for (TxReadWriteSetInfo.NsRwsetInfo nsRwsetInfo : rwsetInfo.getNsRwsetInfos()) {
+                if (!nsRwsetInfo.getNamespace().equals(chaincodeName)) {
+                    continue;
+                }
+                KvRwset.KVRWSet rwset;
+                try {
+                    rwset = nsRwsetInfo.getRwset();
+                } catch (InvalidProtocolBufferException e) {
+                    logger.warn("Failed to parse read-write set of anchor transaction " + transaction.getTransactionID(), e);
+                    return false;
+                }
+                for (KvRwset.KVWrite write : rwset.getWritesList()) {
+                    if (!write.getIsDelete() && key.equals(write.getKey())
+                            && root.equalsIgnoreCase(write.getValue().toString(StandardCharsets.UTF_8))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String computeRoot(String hash, MerkleProof proof) {
+        if (hash == null || proof == null || proof.getSiblings() == null || proof.getLeftSiblings() == null) {
+            return null;
+        }
+        try {
+            return MerkleTree.computeRoot(hash, proof);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 锚定剩余的hash并停止定时器
+     */
+    @Override
+    public synchronized void close() {
+        flush();
+        closed = true;
+        scheduler.shutdown();
+    }
+}
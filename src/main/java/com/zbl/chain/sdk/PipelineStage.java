@@ -0,0 +1,117 @@
+package com.zbl.chain.sdk;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 流水线中的一个阶段，统计排队数、执行中数量和耗时，用于定位瓶颈
+ */
+public class PipelineStage {
+
+    private final String name;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    public PipelineStage(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 在executor上执行同步任务，等待线程期间计入排队数
+     */
+    public <T> CompletableFuture<T> supplyAsync(Callable<T> task, Executor executor) {
+        queued.incrementAndGet();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                long start = System.nanoTime();
+                boolean success = false;
+                try {
+                    T result = task.call();
+                    success = true;
+                    return result;
+                } catch (CompletionException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                } finally {
+                    finish(start, success);
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            failed.incrementAndGet();
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * 跟踪一个异步操作，完成前计入执行中数量
+     */
+    public <T> CompletableFuture<T> track(Supplier<CompletableFuture<T>> operation) {
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+            finish(start, false);
+            throw e;
+        }
+        return future.whenComplete((r, e) -> finish(start, e == null));
+    }
+
+    private void finish(long start, boolean success) {
+        active.decrementAndGet();
+        busyNanos.addAndGet(System.nanoTime() - start);
+        (success ? completed : failed).incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 等待线程的任务数
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * 平均耗时，单位毫秒
+     */
+    public double getAverageMillis() {
+        long count = completed.get() + failed.get();
+        return count == 0 ? 0 : busyNanos.get() / 1e6 / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[queued=%d, active=%d, completed=%d, failed=%d, avg=%.2fms]",
+                name, getQueueDepth(), getActive(), getCompleted(), getFailed(), getAverageMillis());
+    }
+}
@@ -0,0 +1,80 @@
+package com.zbl.chain.sdk;
+
+import com.zbl.chain.sdk.cache.WriteCache;
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import com.zbl.chain.sdk.pojos.response.CreateTransResponse;
+import com.zbl.chain.sdk.utils.FabricUtils;
+import org.hyperledger.fabric.sdk.TransactionProposalRequest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * 分阶段的交易发送流水线
+ * build：构建提议、生成nonce和txID（CPU线程池）；
+ * endorse：签名提议并发送给背书节点（背书方式负责，阻塞调用在IO线程池上）；
+ * broadcast：组装、签名交易信封并发送到orderer（IO线程池）；
+ * commit：等待落块（CommitTracker，不占线程）。
+ * sdk在发送提议时才签名，签名与endorse阶段无法拆开。每个阶段的排队数和耗时见getStages
+ */
+public class SubmissionPipeline {
+
+    private static final Executor CPU_EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "zbl-pipeline-cpu");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ZblClient client;
+    private final Executor cpuExecutor;
+    private final Executor ioExecutor;
+    private final PipelineStage build = new PipelineStage("build");
+    private final PipelineStage endorse = new PipelineStage("endorse");
+    private final PipelineStage broadcast = new PipelineStage("broadcast");
+    private final PipelineStage commit = new PipelineStage("commit");
+
+    public SubmissionPipeline(ZblClient client) {
+        this(client, CPU_EXECUTOR, null);
+    }
+
+    /**
+     * @param cpuExecutor 执行构建提议等CPU密集任务，线程数宜与CPU核数相同
+     * @param ioExecutor  执行阻塞的网络调用及完成回调，为null时使用客户端的executor
+     */
+    public SubmissionPipeline(ZblClient client, Executor cpuExecutor, Executor ioExecutor) {
+        this.client = client;
+        this.cpuExecutor = cpuExecutor;
+        this.ioExecutor = ioExecutor;
+    }
+
+    public CompletableFuture<CreateTransResponse> submit(CreateTransPayload payload) {
+        WriteCache.Entry write = client.trackWrite(payload);
+        return build.supplyAsync(() -> buildRequest(payload), cpuExecutor)
+                .thenCompose(request -> endorse.track(() -> client.endorseAsync(request)))
+                .thenCompose(responses -> broadcast.supplyAsync(() -> client.broadcast(responses), ioExecutor()))
+                .thenCompose(committed -> commit.track(() -> committed))
+                .thenApplyAsync(event -> client.newCreateTransResponse(event.getTransactionID()), ioExecutor())
+                .whenComplete((response, e) -> client.settleWrite(write, null == response ? null : response.getData().getTxID(), e));
+    }
+
+    private Executor ioExecutor() {
+        return null == ioExecutor ? client.getExecutor() : ioExecutor;
+    }
+
+    private TransactionProposalRequest buildRequest(CreateTransPayload payload) throws Exception {
+        TransactionProposalRequest request = FabricUtils.newTransactionProposalRequest(client.getHfClient(), client.getChaincodeName(),
+                "invoke", new String[]{"put", payload.getBusinessId(), payload.getHash()}, ZblClient.getConfig().getProposalWaitTime());
+        request.setTransactionContext(client.getChannel().newTransactionContext());
+        return request;
+    }
+
+    /**
+     * 按流水线顺序返回各阶段
+     */
+    public List<PipelineStage> getStages() {
+        return Arrays.asList(build, endorse, broadcast, commit);
+    }
+}
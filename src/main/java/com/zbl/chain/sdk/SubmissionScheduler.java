@@ -0,0 +1,205 @@
+package com.zbl.chain.sdk;
+
+import com.zbl.chain.sdk.exceptions.InvalidTransactionException;
+import com.zbl.chain.sdk.exceptions.OverloadException;
+import com.zbl.chain.sdk.limit.TokenBudget;
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import com.zbl.chain.sdk.pojos.response.CreateTransResponse;
+import com.zbl.chain.sdk.utils.FabricUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.protos.peer.TransactionPackage.TxValidationCode;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 按businessId分条带串行提交交易，并自动重试MVCC冲突
+ * businessId哈希到条带，同一条带上的交易依次提交（前一笔落块或失败后才背书下一笔），避免同一key的写入互相冲突；
+ * 条带通过原子替换队尾future串接，不加锁。
+ * 因MVCC_READ_CONFLICT/PHANTOM_READ_CONFLICT失效的交易按指数退避加随机抖动重新背书、提交，
+ * 重试次数受单笔上限和整体重试配额限制
+ */
+public class SubmissionScheduler {
+    private static final Log logger = LogFactory.getLog(SubmissionScheduler.class);
+
+    /**
+     * 重试配额最多积累的令牌数
+     */
+    private static final int MAX_RETRY_BURST = 100;
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "zbl-submission-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ZblClient client;
+    private final AtomicReferenceArray<CompletableFuture<Void>> tails;
+    private final int mask;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final TokenBudget retryBudget;
+
+    /**
+     * @param stripes           条带数，向上取整为2的幂
+     * @param maxAttempts       单笔交易最多提交次数（含首次）
+     * @param baseBackoffMillis 首次重试的最大退避时间，之后每次翻倍
+     * @param maxBackoffMillis  退避时间上限
+     * @param retryPercent      重试占提交总数的最大百分比
+     */
+    public SubmissionScheduler(ZblClient client, int stripes, int maxAttempts, long baseBackoffMillis, long maxBackoffMillis,
+                               double retryPercent) {
+        if (stripes < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("stripes and maxAttempts must be positive");
+        }
+        int size = Integer.highestOneBit(stripes - 1) << 1;
+        this.client = client;
+        this.tails = new AtomicReferenceArray<>(Math.max(1, size));
+        this.mask = tails.length() - 1;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.retryBudget = new TokenBudget(retryPercent, MAX_RETRY_BURST);
+    }
+
+    /**
+     * 提交交易，同一条带上的交易按调用顺序依次提交
+     *
+     * @return 交易落块后完成；重试用尽或非MVCC错误时以最后一次的异常结束
+     */
+    public CompletableFuture<CreateTransResponse> submit(CreateTransPayload payload) {
+        return submit(payload.getBusinessId(), client::sendTransactionAsync, payload);
+    }
+
+    /**
+     * 按key所在条带串行提交，send每次调用发送一笔新交易（重新背书）
+     */
+    public <T, R> CompletableFuture<R> submit(String key, Function<T, CompletableFuture<R>> send, T request) {
+        int stripe = stripeOf(key);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = tails.getAndSet(stripe, done);
+        CompletableFuture<R> result = new CompletableFuture<>();
+        result.whenComplete((r, e) -> {
+            tails.compareAndSet(stripe, done, null);
+            done.complete(null);
+        });
+
+        retryBudget.onRequest();
+        Supplier<CompletableFuture<R>> sender = () -> send.apply(request);
+        if (previous == null) {
+            attempt(key, sender, 1, result);
+        } else {
+            previous.whenComplete((v, e) -> attempt(key, sender, 1, result));
+        }
+        return result;
+    }
+
+    /**
+     * 不分条带，只对MVCC冲突重试；用于写入多个key的交易（如putBatch）
+     */
+    public <R> CompletableFuture<R> retrying(String description, Supplier<CompletableFuture<R>> send) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        retryBudget.onRequest();
+        attempt(description, send, 1, result);
+        return result;
+    }
+
+    /**
+     * 被限流器拒绝（OverloadException）时退避后重新发送，直到被接受；不计入重试次数和配额。
+     * 用于批量、流式提交：被拒绝的请求继续占用调用方的窗口，对上游形成反压，onOverload通知调用方缩小窗口
+     */
+    public <R> CompletableFuture<R> whileOverloaded(Supplier<CompletableFuture<R>> send, Consumer<OverloadException> onOverload) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        resend(send, onOverload, 1, result);
+        return result;
+    }
+
+    private <R> void resend(Supplier<CompletableFuture<R>> send, Consumer<OverloadException> onOverload, int rejections,
+                            CompletableFuture<R> result) {
+        CompletableFuture<R> sent;
+        try {
+            sent = send.get();
+        } catch (RuntimeException e) {
+            sent = FabricUtils.failedFuture(e);
+        }
+        sent.whenComplete((response, e) -> {
+            if (e == null) {
+                result.complete(response);
+                return;
+            }
+            Throwable cause = unwrap(e);
+            if (!(cause instanceof OverloadException)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            onOverload.accept((OverloadException) cause);
+            timer.schedule(() -> resend(send, onOverload, rejections + 1, result),
+                    Math.max(1, backoff(rejections)), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private <R> void attempt(String key, Supplier<CompletableFuture<R>> send, int attempt, CompletableFuture<R> result) {
+        CompletableFuture<R> sent;
+        try {
+            sent = send.get();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        sent.whenComplete((response, e) -> {
+            if (e == null) {
+                result.complete(response);
+                return;
+            }
+            Throwable cause = unwrap(e);
+            if (attempt < maxAttempts && isMvccConflict(cause) && retryBudget.tryAcquire()) {
+                long delay = backoff(attempt);
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("Retrying %s after %s in %d ms (attempt %d)",
+                            key, cause.getMessage(), delay, attempt + 1));
+                }
+                timer.schedule(() -> attempt(key, send, attempt + 1, result), delay, TimeUnit.MILLISECONDS);
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    /**
+     * 指数退避加全抖动：[0, min(max, base * 2^(attempt-1))]
+     */
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private int stripeOf(String businessId) {
+        int h = null == businessId ? 0 : businessId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    static boolean isMvccConflict(Throwable e) {
+        if (!(e instanceof InvalidTransactionException)) {
+            return false;
+        }
+        int code = ((InvalidTransactionException) e).getValidationCode();
+        return code == TxValidationCode.MVCC_READ_CONFLICT_VALUE || code == TxValidationCode.PHANTOM_READ_CONFLICT_VALUE;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
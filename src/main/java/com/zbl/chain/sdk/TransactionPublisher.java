@@ -0,0 +1,255 @@
+package com.zbl.chain.sdk;
+
+import com.zbl.chain.sdk.cache.WriteCache;
+import com.zbl.chain.sdk.exceptions.OverloadException;
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import com.zbl.chain.sdk.pojos.response.BulkSubmitResult;
+import com.zbl.chain.sdk.pojos.response.CreateTransResponse;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把存证流转换为交易结果流（Reactive Streams）
+ * 只向上游请求当前窗口能容纳的存证数：处于背书阶段的不超过maxProposalsInFlight，
+ * 未完成和已完成但下游尚未取走的合计不超过maxInFlight，下游消费慢时上游随之停止。
+ * 结果按完成顺序发出，单笔交易失败只体现在结果的error中，不终止流；只支持一个订阅者。
+ * 交易经SubmissionScheduler提交，同一businessId串行并重试MVCC冲突；背书被限流器拒绝不作为结果，
+ * 而是退避重发，并把背书窗口收缩到限流器的当前上限，之后每次背书成功放宽一个
+ */
+public class TransactionPublisher implements Publisher<BulkSubmitResult> {
+
+    private final ZblClient client;
+    private final Publisher<CreateTransPayload> source;
+    private final int maxProposalsInFlight;
+    private final int maxInFlight;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public TransactionPublisher(ZblClient client, Publisher<CreateTransPayload> source, int maxProposalsInFlight, int maxInFlight) {
+        if (maxProposalsInFlight < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("in-flight limits must be positive");
+        }
+        this.client = client;
+        this.source = source;
+        this.maxProposalsInFlight = maxProposalsInFlight;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super BulkSubmitResult> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("TransactionPublisher allows only one subscriber"));
+            return;
+        }
+        source.subscribe(new Bridge(subscriber));
+    }
+
+    private class Bridge implements Subscriber<CreateTransPayload>, Subscription {
+        private final Subscriber<? super BulkSubmitResult> downstream;
+        private final Queue<BulkSubmitResult> results = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong demand = new AtomicLong();
+        /**
+         * 已向上游请求但尚未收到的存证数
+         */
+        private final AtomicInteger requestedUpstream = new AtomicInteger();
+        private final AtomicInteger proposing = new AtomicInteger();
+        /**
+         * 当前的背书窗口，不超过maxProposalsInFlight
+         */
+        private final AtomicInteger proposalWindow = new AtomicInteger(maxProposalsInFlight);
+        /**
+         * 已收到但尚未交给下游的存证数，包括发送中和已完成待取走的
+         */
+        private final AtomicInteger occupied = new AtomicInteger();
+
+        private volatile Subscription upstream;
+        private volatile boolean upstreamDone;
+        private volatile Throwable upstreamError;
+        private volatile boolean cancelled;
+        private boolean terminated;
+        private long index;
+
+        Bridge(Subscriber<? super BulkSubmitResult> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(CreateTransPayload payload) {
+            requestedUpstream.decrementAndGet();
+            occupied.incrementAndGet();
+            proposing.incrementAndGet();
+            long position = index++;
+
+            WriteCache.Entry write = client.trackWrite(payload);
+            AtomicBoolean endorsing = new AtomicBoolean(true);
+            Runnable endorsed = () -> {
+                if (endorsing.compareAndSet(true, false)) {
+                    proposing.decrementAndGet();
+                    drain();
+                }
+            };
+            CompletableFuture<CreateTransResponse> sent;
+            try {
+                SubmissionScheduler scheduler = client.getSubmissionScheduler();
+                sent = scheduler.submit(payload.getBusinessId(), p -> {
+                    CompletableFuture<Collection<ProposalResponse>> endorsement =
+                            scheduler.whileOverloaded(() -> client.endorseAsync(p), this::shrinkWindow);
+                    endorsement.whenComplete((r, e) -> {
+                        if (e == null) {
+                            proposalWindow.updateAndGet(w -> Math.min(maxProposalsInFlight, w + 1));
+                        }
+                        endorsed.run();
+                    });
+                    return endorsement.thenCompose(client::commitAsync);
+                }, payload);
+            } catch (RuntimeException e) {
+                sent = new CompletableFuture<>();
+                sent.completeExceptionally(e);
+            }
+            sent.whenComplete((response, e) -> {
+                endorsed.run();
+                Throwable error = unwrap(e);
+                client.settleWrite(write, null == response ? null : response.getData().getTxID(), error);
+                results.add(new BulkSubmitResult(position, payload, response, error));
+                drain();
+            });
+        }
+
+        /**
+         * 背书被限流器拒绝时把窗口缩小到限流器当前的上限
+         */
+        private void shrinkWindow(OverloadException e) {
+            int limit = Math.max(1, e.getLimit());
+            proposalWindow.updateAndGet(w -> Math.min(w, limit));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            upstreamError = throwable;
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                upstreamError = new IllegalArgumentException("request must be positive, got " + n);
+                upstreamDone = true;
+                results.clear();
+                occupied.set(0);
+                drain();
+                return;
+            }
+            long current;
+            do {
+                current = demand.get();
+            } while (current != Long.MAX_VALUE && !demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+        /**
+         * 串行执行：向下游发出结果、终止、向上游补充请求
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (cancelled && !upstreamDone) {
+                    results.clear();
+                } else if (!terminated) {
+                    emit();
+                    if (upstreamDone && occupied.get() == 0) {
+                        terminated = true;
+                        Throwable error = upstreamError;
+                        if (error != null) {
+                            downstream.onError(error);
+                        } else {
+                            downstream.onComplete();
+                        }
+                    } else if (!upstreamDone && !cancelled) {
+                        replenish();
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            BulkSubmitResult result;
+            while (demand.get() > 0 && !cancelled && (result = results.poll()) != null) {
+                occupied.decrementAndGet();
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                downstream.onNext(result);
+            }
+        }
+
+        private void replenish() {
+            int requested = requestedUpstream.get();
+            int want = Math.min(maxInFlight - occupied.get() - requested, proposalWindow.get() - proposing.get() - requested);
+            if (want > 0) {
+                requestedUpstream.addAndGet(want);
+                upstream.request(want);
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
@@ -1,19 +1,54 @@
 package com.zbl.chain.sdk;
 
 
+import com.zbl.chain.sdk.cache.WriteCache;
+import com.zbl.chain.sdk.endorsement.DiscoveryEndorsement;
+import com.zbl.chain.sdk.endorsement.EndorsementStrategy;
+import com.zbl.chain.sdk.event.CommitTracker;
+import com.zbl.chain.sdk.exceptions.ClientException;
 import com.zbl.chain.sdk.exceptions.ServerException;
+import com.zbl.chain.sdk.index.AnchorIndex;
+import com.zbl.chain.sdk.limit.AdaptiveLimiter;
+import com.zbl.chain.sdk.outbox.Outbox;
 import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import com.zbl.chain.sdk.pojos.response.BulkSubmitResult;
+import com.zbl.chain.sdk.pojos.response.CreateTransResponse;
+import com.zbl.chain.sdk.pojos.response.QueryTransResponse;
+import com.zbl.chain.sdk.pojos.response.data.CreateTransData;
+import com.zbl.chain.sdk.pojos.response.data.QueryTransData;
+import com.zbl.chain.sdk.utils.BatchCodec;
 import com.zbl.chain.sdk.utils.FabricUtils;
+import com.zbl.chain.sdk.utils.LruCache;
 import org.hyperledger.fabric.sdk.*;
 import org.hyperledger.fabric.sdk.exception.CryptoException;
 import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.reactivestreams.Publisher;
 
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.spec.InvalidKeySpecException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import java.io.IOException;
 
@@ -21,10 +56,38 @@ import java.security.InvalidKeyException;
 import java.security.cert.CertificateException;
 
 
-public class ZblClient {
+public class ZblClient implements AutoCloseable {
 
   private static final FabricConfig config = FabricConfig.getInstance();
 
+  /**
+   * 执行阻塞的背书、查询请求，线程数由MaxProposalsInFlight限定，超出的请求排队而不是新建线程；空闲线程60秒后回收
+   */
+  private static final Executor DEFAULT_EXECUTOR = newDefaultExecutor(Math.max(config.getMaxProposalsInFlight(),
+      Runtime.getRuntime().availableProcessors()));
+
+
+  /**
+   * 预热时只读背书使用的businessId
+   */
+  private static final String WARM_UP_KEY = "__zbl_warm_up__";
+
+  /**
+   * 已落块交易的查询结果，key为channel|txID
+   */
+  private static final LruCache<String, QueryTransData> TRANSACTION_CACHE = new LruCache<>(config.getTransactionCacheSize());
+
+
+  private static Executor newDefaultExecutor(int threads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), r -> {
+      Thread thread = new Thread(r, "zbl-client-async");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
 
   private String channelID ;
 
@@ -40,32 +103,199 @@ public class ZblClient {
 
   private FabricOrg fabricOrg;
 
+  private boolean orgFromConfig;
+
+  private ChannelRegistry.Lease lease;
+
+  /**
+   * 通道由本客户端用注入的hfClient创建，关闭客户端时一并关闭
+   */
+  private boolean ownsChannel;
+
+  private Executor executor = DEFAULT_EXECUTOR;
+
+  private EndorsementStrategy endorsementStrategy = DiscoveryEndorsement.getInstance();
+
+  private int queryAgreement = 1;
+
+  private AdaptiveLimiter proposalLimiter;
+
+  private AdaptiveLimiter broadcastLimiter;
+
+  private LaneScheduler laneScheduler;
+
+  private SubmissionPipeline submissionPipeline;
 
+  private SubmissionScheduler submissionScheduler;
+
+  private final CompletableFuture<Void> readiness = new CompletableFuture<>();
+
+  private CompletableFuture<Void> warmUp;
+
+  private WriteCache writeCache = new WriteCache(config.getWriteCacheSize(), TimeUnit.SECONDS.toMillis(config.getWriteCacheTtl()));
+
+
+  /**
+   * 组织的管理员用户在首次使用时才加载，只加载本客户端使用的组织
+   */
   public ZblClient() throws IOException, CertificateException, InvalidKeyException, NoSuchAlgorithmException, NoSuchProviderException, InvalidKeySpecException {
-    config.initOrgs();
   }
-  public HFClient getHfClient() throws CryptoException, InvalidArgumentException{
+  public synchronized HFClient getHfClient() throws CryptoException, InvalidArgumentException{
     if(null==hfClient){
-      hfClient= FabricUtils.getClient(getFabricOrg().getPeerAdmin());
+      hfClient= getLease().getHfClient();
     }
     return hfClient;
   }
 
-  public void setHfClient(HFClient hfClient) {
+  public synchronized void setHfClient(HFClient hfClient) {
     this.hfClient = hfClient;
   }
 
-  public Channel getChannel() throws Exception  {
+  /**
+   * 未显式设置时使用ChannelRegistry中共享的通道
+   */
+  public synchronized Channel getChannel() throws Exception  {
+    refreshOrg();
     if(null==channel){
-      channel=FabricUtils.getExistingChannel(channelID, getFabricOrg(), getHfClient(), config);
+      if (null == lease && null != hfClient) {
+        channel=FabricUtils.getExistingChannel(channelID, getFabricOrg(), hfClient, config);
+        ownsChannel = true;
+      } else {
+        channel = getLease().getChannel();
+      }
+    }
+    return channel;
+  }
 
+  private ChannelRegistry.Lease getLease() {
+    if (null == lease) {
+      lease = ChannelRegistry.acquire(channelID, getFabricOrg(), config);
+    }
+    return lease;
+  }
 
+  /**
+   * 配置热加载替换了本组织时改用新组织的共享通道；旧通道在交易等待时间后释放，进行中的交易不受影响
+   */
+  private void refreshOrg() {
+    if (null == lease || !orgFromConfig) {
+      return;
     }
-    return channel;
+    FabricOrg current = config.getIntegrationSampleOrg(orgName);
+    if (null == current || current == fabricOrg) {
+      return;
+    }
+    lease.closeAfter(config.getTransactionWaitTime(), TimeUnit.SECONDS);
+    lease = null;
+    hfClient = null;
+    channel = null;
+    fabricOrg = null;
   }
 
-  public void setChannel(Channel channel){
+  /**
+   * 预热：加载管理员用户、初始化通道，并行连接所有peer和orderer并做一次服务发现，
+   * 注册落块监听，再用一次只读背书建立背书layout；只背书不提交，不产生交易。
+   * 预热进行中或已成功时返回同一个future，失败后可重新调用
+   */
+  public synchronized CompletableFuture<Void> warmUp() {
+    if (null != warmUp && !warmUp.isCompletedExceptionally()) {
+      return warmUp;
+    }
+    CompletableFuture<Void> attempt = CompletableFuture.supplyAsync(() -> {
+      try {
+        return getChannel();
+      } catch (Exception e) {
+        throw new CompletionException(e);
+      }
+    }, executor).thenCompose(channel -> FabricUtils.warmUpChannel(channel, getFabricOrg().getPeerAdmin(), executor)
+        .thenCompose(chaincodes -> {
+          CommitTracker.of(channel);
+          getSubmissionPipeline();
+          return warmUpEndorsement(channel);
+        }));
+    attempt.thenRun(() -> readiness.complete(null));
+    warmUp = attempt;
+    return attempt;
+  }
+
+  private CompletableFuture<Void> warmUpEndorsement(Channel channel) {
+    if (null == getChaincodeName()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    final TransactionProposalRequest request;
+    try {
+      request = FabricUtils.newTransactionProposalRequest(getHfClient(), getChaincodeName(), "invoke",
+          new String[]{"get", WARM_UP_KEY}, config.getProposalWaitTime());
+    } catch (Exception e) {
+      return FabricUtils.failedFuture(e);
+    }
+    // 不经过限流器，冷启动的耗时不计入并发限制的基线
+    return endorsementStrategy.endorse(channel, request, executor).thenApply(responses -> {
+      checkWarmUpResponses(responses);
+      return null;
+    });
+  }
+
+  /**
+   * 预热只要求至少一个背书成功，全部失败时就绪不成立
+   */
+  private static void checkWarmUpResponses(Collection<ProposalResponse> responses) {
+    String message = "no proposal response received from endorsers";
+    if (null != responses) {
+      for (ProposalResponse response : responses) {
+        if (response.getStatus() == ProposalResponse.Status.SUCCESS) {
+          return;
+        }
+        message = response.getMessage();
+      }
+    }
+    throw new CompletionException(new ServerException("warm-up endorsement rejected: " + message, System.currentTimeMillis()));
+  }
+
+  /**
+   * 首次预热成功后完成，可用于就绪探针
+   */
+  public CompletableFuture<Void> getReadiness() {
+    return readiness.thenApply(Function.identity());
+  }
+
+  /**
+   * 健康检查：已预热，且客户端未关闭、通道未关闭
+   */
+  public synchronized boolean isReady() {
+    if (!readiness.isDone()) {
+      return false;
+    }
+    return null == channel ? null != lease : !channel.isShutdown();
+  }
+
+  /**
+   * 释放共享通道，最后一个使用者释放时通道关闭；
+   * 用注入的hfClient创建的通道在这里关闭；通过setChannel注入的通道由调用方管理，这里只注销其落块跟踪器和调度器
+   */
+  @Override
+  public synchronized void close() {
+    if (null != lease) {
+      lease.close();
+      lease = null;
+      hfClient = null;
+      channel = null;
+      warmUp = null;
+    } else if (null != channel) {
+      CommitTracker.remove(channel);
+      LaneScheduler.remove(channel);
+      if (ownsChannel) {
+        channel.shutdown(true);
+      }
+      ownsChannel = false;
+      channel = null;
+      warmUp = null;
+    }
+  }
+
+  public synchronized void setChannel(Channel channel){
     this.channel = channel;
+    this.ownsChannel = false;
   }
 
 
@@ -101,61 +331,614 @@ public class ZblClient {
     this.orgName = orgName;
   }
 
-  public FabricOrg getFabricOrg(){
+  public synchronized FabricOrg getFabricOrg(){
     if(null==fabricOrg){
+      try {
+        config.initOrg(orgName);
+      } catch (IOException | GeneralSecurityException e) {
+        throw new ClientException("failed to load admin credentials of org " + orgName, e);
+      }
       this.fabricOrg = config.getIntegrationSampleOrg(orgName);
+      this.orgFromConfig = true;
     }
     return fabricOrg;
   }
 
-  public void setFabricOrg(FabricOrg fabricOrg){
+  public synchronized void setFabricOrg(FabricOrg fabricOrg){
     this.fabricOrg = fabricOrg;
+    this.orgFromConfig = false;
   }
 
+  /**
+   * 同步发送交易，与异步发送一样经SubmissionScheduler按businessId串行并重试MVCC冲突
+   *
+   * @return 落块后的txID；背书失败、交易无效或重试用尽时抛出对应异常
+   */
   public String  sendTransaction(CreateTransPayload createTransPayload) throws Exception{
-    Collection<ProposalResponse> successful = new LinkedList<>();
-    Collection<ProposalResponse> transactionPropResp = null;
+    return await(getSubmissionScheduler().submit(createTransPayload)).getData().getTxID();
+  }
 
-      transactionPropResp = FabricUtils.sendProposalToPeers(getChannel(), getHfClient(),getChaincodeName(),"invoke", new String[]{"put",createTransPayload.getBusinessId(),createTransPayload.getHash()}, config.getProposalWaitTime());
+  /**
+   * 异步发送交易：经SubmissionPipeline分阶段执行，构建、背书、提交orderer、等待落块都不阻塞调用线程
+   */
+  public CompletableFuture<CreateTransResponse> sendTransactionAsync(CreateTransPayload createTransPayload) {
+    return getSubmissionPipeline().submit(createTransPayload);
+  }
 
-    for (ProposalResponse response : transactionPropResp) {
-      if (response.getStatus() == ProposalResponse.Status.SUCCESS) {
+  public synchronized SubmissionPipeline getSubmissionPipeline(){
+    if (null == submissionPipeline) {
+      submissionPipeline = new SubmissionPipeline(this);
+    }
+    return submissionPipeline;
+  }
 
-        successful.add(response);
-      } else {
-          throw  new ServerException(response.getMessage(),System.currentTimeMillis());
+  /**
+   * 设置发送流水线，可指定CPU和IO线程池
+   */
+  public synchronized void setSubmissionPipeline(SubmissionPipeline submissionPipeline){
+    this.submissionPipeline = submissionPipeline;
+  }
+
+  /**
+   * 按优先级通道异步发送交易，各通道共享MaxTransactionsInFlight的并发上限，批量导入不会挤占交互请求；
+   * 未设置调度器时使用通道共享的调度器，共用该通道的所有客户端一起排队
+   */
+  public CompletableFuture<CreateTransResponse> sendTransactionAsync(CreateTransPayload createTransPayload, Lane lane) {
+    final LaneScheduler scheduler;
+    try {
+      scheduler = getLaneScheduler();
+    } catch (RuntimeException e) {
+      return FabricUtils.failedFuture(e);
+    }
+    return scheduler.submit(this, createTransPayload, lane);
+  }
+
+  public synchronized LaneScheduler getLaneScheduler(){
+    if (null != laneScheduler) {
+      return laneScheduler;
+    }
+    try {
+      return LaneScheduler.of(getChannel());
+    } catch (Exception e) {
+      throw new ClientException("failed to initialize channel " + channelID, e);
+    }
+  }
+
+  /**
+   * 设置本客户端专用的优先级通道调度器，可按通道指定未完成交易上限；设为null时恢复使用通道共享的调度器
+   */
+  public synchronized void setLaneScheduler(LaneScheduler laneScheduler){
+    this.laneScheduler = laneScheduler;
+  }
+
+  /**
+   * 将多条存证打包为一笔putBatch交易发送，超过MaxBatchSize时拆分为多笔交易
+   *
+   * @return 每条存证的结果，顺序与输入一致，同一笔交易内的存证txID相同
+   */
+  public List<CreateTransResponse> sendTransactionBatch(List<CreateTransPayload> payloads) throws Exception{
+    List<CreateTransResponse> responses = new ArrayList<>(payloads.size());
+    for (List<CreateTransPayload> batch : partition(payloads, config.getMaxBatchSize())) {
+      List<WriteCache.Entry> writes = trackWrites(batch);
+      String txID;
+      try {
+        txID = await(getSubmissionScheduler().retrying("putBatch of " + batch.size(),
+            () -> endorseBatchAsync(batch).thenCompose(this::broadcast))).getTransactionID();
+        settleWrites(writes, txID, null);
+      } catch (Exception e) {
+        settleWrites(writes, null, e);
+        throw e;
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        responses.add(newCreateTransResponse(txID));
       }
     }
+    return responses;
+  }
 
-    return sendTransactionToOrderer(getChannel(), successful);
+  /**
+   * 异步批量打包发送，参见sendTransactionBatch；MVCC冲突的重试与同步方法相同
+   */
+  public CompletableFuture<List<CreateTransResponse>> sendTransactionBatchAsync(List<CreateTransPayload> payloads) {
+    List<CompletableFuture<List<CreateTransResponse>>> futures = new ArrayList<>();
+    for (List<CreateTransPayload> batch : partition(payloads, config.getMaxBatchSize())) {
+      List<WriteCache.Entry> writes = trackWrites(batch);
+      futures.add(getSubmissionScheduler().retrying("putBatch of " + batch.size(),
+          () -> endorseBatchAsync(batch).thenCompose(this::commitAsync))
+          .whenComplete((response, e) -> settleWrites(writes, null == response ? null : response.getData().getTxID(), e))
+          .thenApply(response -> {
+            List<CreateTransResponse> responses = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+              responses.add(newCreateTransResponse(response.getData().getTxID()));
+            }
+            return responses;
+          }));
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+      List<CreateTransResponse> responses = new ArrayList<>(payloads.size());
+      for (CompletableFuture<List<CreateTransResponse>> future : futures) {
+        responses.addAll(future.join());
+      }
+      return responses;
+    });
+  }
+
+  /**
+   * 批量发送交易，按配置的窗口控制同时进行的背书数和未落块交易数，窗口满时阻塞调用线程
+   *
+   * @return 每笔交易的结果，顺序与输入一致
+   */
+  public List<BulkSubmitResult> submitAll(Iterable<CreateTransPayload> payloads) throws InterruptedException {
+    return newBulkSubmitter().submitAll(payloads);
+  }
+
+  /**
+   * 流式批量发送交易，每笔交易完成后回调consumer，全部完成后返回
+   */
+  public void submitAll(Iterable<CreateTransPayload> payloads, Consumer<BulkSubmitResult> consumer) throws InterruptedException {
+    newBulkSubmitter().submitAll(payloads, consumer);
+  }
+
+  /**
+   * 创建并启动本链码的本地businessId索引，使用完毕后需要关闭
+   */
+  public AnchorIndex newAnchorIndex(Path file) throws Exception {
+    AnchorIndex index = new AnchorIndex(file, getChaincodeName());
+    try {
+      index.start(channelID, getFabricOrg(), config);
+    } catch (Exception e) {
+      index.close();
+      throw e;
+    }
+    return index;
+  }
+
+  /**
+   * 创建按businessId串行提交并自动重试MVCC冲突的调度器，同一客户端应共用一个调度器
+   */
+  public SubmissionScheduler newSubmissionScheduler() {
+    return new SubmissionScheduler(this, config.getSubmissionStripes(), config.getMaxCommitAttempts(),
+        config.getRetryBackoff(), config.getRetryBackoff() * 64L, config.getRetryBudgetPercent());
+  }
+
+  /**
+   * 同步发送使用的调度器，首次使用时创建
+   */
+  public synchronized SubmissionScheduler getSubmissionScheduler(){
+    if (null == submissionScheduler) {
+      submissionScheduler = newSubmissionScheduler();
+    }
+    return submissionScheduler;
+  }
+
+  public synchronized void setSubmissionScheduler(SubmissionScheduler submissionScheduler){
+    this.submissionScheduler = submissionScheduler;
+  }
+
+  /**
+   * 打开持久化发件箱并重新发送上次未完成的存证，使用完毕后需要关闭；重放失败的存证记录日志并保留在发件箱中
+   */
+  public Outbox newOutbox(Path directory) throws IOException {
+    Outbox outbox = new Outbox(this, directory);
+    outbox.replayPending();
+    return outbox;
+  }
+
+  /**
+   * 把存证流连接到交易结果流，按背书和落块窗口向上游请求存证，窗口大小同submitAll
+   */
+  public Publisher<BulkSubmitResult> submitStream(Publisher<CreateTransPayload> payloads) {
+    return new TransactionPublisher(this, payloads, config.getMaxProposalsInFlight(), config.getMaxTransactionsInFlight());
+  }
+
+  public BulkSubmitter newBulkSubmitter() {
+    return new BulkSubmitter(this, config.getMaxProposalsInFlight(), config.getMaxTransactionsInFlight());
+  }
 
+  /**
+   * 在写缓存中记录一次发送中的写入，未启用写缓存时返回null
+   */
+  protected WriteCache.Entry trackWrite(CreateTransPayload createTransPayload) {
+    WriteCache cache = writeCache;
+    return null == cache ? null : cache.pending(createTransPayload.getBusinessId(), createTransPayload.getHash());
+  }
+
+  private List<WriteCache.Entry> trackWrites(List<CreateTransPayload> payloads) {
+    List<WriteCache.Entry> writes = new ArrayList<>(payloads.size());
+    for (CreateTransPayload payload : payloads) {
+      writes.add(trackWrite(payload));
+    }
+    return writes;
+  }
+
+  /**
+   * 根据交易结果更新写缓存，txID为null（未落块）或有异常时记为失效
+   */
+  protected void settleWrite(WriteCache.Entry write, String txID, Throwable error) {
+    WriteCache cache = writeCache;
+    if (null == cache || null == write) {
+      return;
+    }
+    if (null == error && null != txID) {
+      cache.committed(write, txID);
+    } else {
+      cache.invalidated(write);
+    }
+  }
+
+  private void settleWrites(List<WriteCache.Entry> writes, String txID, Throwable error) {
+    for (WriteCache.Entry write : writes) {
+      settleWrite(write, txID, error);
+    }
+  }
+
+  /**
+   * 异步背书
+   */
+  protected CompletableFuture<Collection<ProposalResponse>> endorseAsync(CreateTransPayload createTransPayload) {
+    return endorseAsync(client -> FabricUtils.newTransactionProposalRequest(client, getChaincodeName(), "invoke",
+        new String[]{"put", createTransPayload.getBusinessId(), createTransPayload.getHash()}, config.getProposalWaitTime()));
+  }
+
+  /**
+   * 异步背书一笔putBatch交易
+   */
+  protected CompletableFuture<Collection<ProposalResponse>> endorseBatchAsync(List<CreateTransPayload> payloads) {
+    return endorseAsync(client -> FabricUtils.newTransactionProposalRequest(client, getChaincodeName(), "invoke",
+        batchArgs(payloads), config.getProposalWaitTime()));
+  }
+
+  private CompletableFuture<Collection<ProposalResponse>> endorseAsync(Function<HFClient, TransactionProposalRequest> requestBuilder) {
+    final TransactionProposalRequest request;
+    try {
+      request = requestBuilder.apply(getHfClient());
+    } catch (Exception e) {
+      return FabricUtils.failedFuture(e);
+    }
+    return endorseAsync(request);
+  }
+
+  /**
+   * 按背书方式异步背书已构建好的提议
+   */
+  protected CompletableFuture<Collection<ProposalResponse>> endorseAsync(TransactionProposalRequest request) {
+    final Channel channel;
+    try {
+      channel = getChannel();
+    } catch (Exception e) {
+      return FabricUtils.failedFuture(e);
+    }
+
+    AdaptiveLimiter limiter = proposalLimiter;
+    if (null == limiter) {
+      return endorsementStrategy.endorse(channel, request, executor);
+    }
+    return limiter.call(() -> endorsementStrategy.endorse(channel, request, executor));
+  }
+
+  private static byte[][] batchArgs(List<CreateTransPayload> payloads) {
+    return new byte[][]{"putBatch".getBytes(StandardCharsets.UTF_8), BatchCodec.encode(payloads)};
+  }
+
+  private static <T> List<List<T>> partition(List<T> list, int size) {
+    List<List<T>> partitions = new ArrayList<>();
+    for (int i = 0; i < list.size(); i += size) {
+      partitions.add(list.subList(i, Math.min(i + size, list.size())));
+    }
+    return partitions;
+  }
+
+  /**
+   * 异步提交背书结果到orderer，通过通道的CommitTracker等待落块
+   */
+  protected CompletableFuture<CreateTransResponse> commitAsync(Collection<ProposalResponse> transactionPropResp) {
+    return broadcast(transactionPropResp).thenApplyAsync(event -> newCreateTransResponse(event.getTransactionID()), executor);
+  }
+
+  /**
+   * 组装并签名交易信封后发送到orderer，发送在调用线程上完成
+   *
+   * @return 交易落块后完成的future
+   */
+  protected CompletableFuture<BlockEvent.TransactionEvent> broadcast(Collection<ProposalResponse> transactionPropResp) {
+    final Channel channel;
+    try {
+      channel = getChannel();
+    } catch (Exception e) {
+      return FabricUtils.failedFuture(e);
+    }
+    return broadcast(channel, transactionPropResp);
+  }
+
+  private CompletableFuture<BlockEvent.TransactionEvent> broadcast(Channel channel, Collection<ProposalResponse> transactionPropResp) {
+    final Collection<ProposalResponse> successful;
+    try {
+      successful = checkProposalResponses(transactionPropResp);
+      if (successful.isEmpty()) {
+        throw new ServerException("no proposal response received from endorsers", System.currentTimeMillis());
+      }
+    } catch (Exception e) {
+      return FabricUtils.failedFuture(e);
+    }
+
+    String txID = successful.iterator().next().getTransactionID();
+    CommitTracker tracker = CommitTracker.of(channel);
+    CompletableFuture<BlockEvent.TransactionEvent> committed = tracker.track(txID, config.getTransactionWaitTime(), TimeUnit.SECONDS);
+    Supplier<CompletableFuture<BlockEvent.TransactionEvent>> broadcast = () -> channel.sendTransaction(successful,
+        Channel.TransactionOptions.createTransactionOptions().nOfEvents(Channel.NOfEvents.createNoEvents()));
+    AdaptiveLimiter limiter = broadcastLimiter;
+    try {
+      (null == limiter ? broadcast.get() : limiter.call(broadcast))
+        .whenComplete((v, e) -> {
+          if (e != null) {
+            tracker.fail(txID, e);
+          }
+        });
+    } catch (RuntimeException e) {
+      tracker.fail(txID, e);
+    }
+    return committed;
+  }
+
+  /**
+   * 为背书和提交orderer启用自适应并发上限，上限分别不超过MaxProposalsInFlight和MaxTransactionsInFlight；
+   * 达到上限的异步请求以OverloadException失败
+   */
+  public void enableAdaptiveConcurrency(){
+    int maxProposals = config.getMaxProposalsInFlight();
+    int maxTransactions = config.getMaxTransactionsInFlight();
+    setProposalLimiter(new AdaptiveLimiter("proposal", Math.max(1, maxProposals / 4), 1, maxProposals));
+    setBroadcastLimiter(new AdaptiveLimiter("broadcast", Math.max(1, maxTransactions / 4), 1, maxTransactions));
+  }
+
+  public AdaptiveLimiter getProposalLimiter(){
+    return proposalLimiter;
+  }
+
+  /**
+   * 设置背书的并发限制，null表示不限制；多个客户端共用同一网络时可共享同一个limiter
+   */
+  public void setProposalLimiter(AdaptiveLimiter proposalLimiter){
+    this.proposalLimiter = proposalLimiter;
+  }
+
+  public AdaptiveLimiter getBroadcastLimiter(){
+    return broadcastLimiter;
+  }
+
+  /**
+   * 设置提交orderer的并发限制，null表示不限制
+   */
+  public void setBroadcastLimiter(AdaptiveLimiter broadcastLimiter){
+    this.broadcastLimiter = broadcastLimiter;
+  }
+
+  public EndorsementStrategy getEndorsementStrategy(){
+    return endorsementStrategy;
+  }
+
+  /**
+   * 设置异步接口使用的背书方式，默认为DiscoveryEndorsement
+   */
+  public void setEndorsementStrategy(EndorsementStrategy endorsementStrategy){
+    this.endorsementStrategy = endorsementStrategy;
+  }
+
+  public Executor getExecutor(){
+    return executor;
+  }
+
+  /**
+   * 设置背书请求及异步结果回调使用的线程池
+   */
+  public void setExecutor(Executor executor){
+    this.executor = executor;
+  }
+
+  public int getQueryAgreement(){
+    return queryAgreement;
+  }
+
+  /**
+   * 链码查询需要返回相同结果的节点数，默认1，即只查询一个节点
+   */
+  public void setQueryAgreement(int queryAgreement){
+    if (queryAgreement < 1) {
+      throw new IllegalArgumentException("queryAgreement must be at least 1: " + queryAgreement);
+    }
+    this.queryAgreement = queryAgreement;
+  }
+
+  /**
+   * 查询链码，按预计延迟选择节点，失败时换下一个节点，直到queryAgreement个节点结果一致
+   *
+   * @return 链码返回的payload
+   */
+  public byte[] queryChaincode(String fcn, String[] args) throws Exception{
+    ProposalResponse response = FabricUtils.sendQueryWithAgreement(getChannel(), getHfClient(), getChaincodeName(), fcn, args,
+        config.getProposalWaitTime(), queryAgreement);
+    return response.getProposalResponse().getResponse().getPayload().toByteArray();
+  }
+
+  /**
+   * 查询businessId对应的hash
+   * 先查写缓存：已落块的直接返回，等待落块的等待其完成，失效或未命中时查询链码
+   */
+  public String queryHash(String businessId) throws Exception{
+    WriteCache cache = writeCache;
+    WriteCache.Entry write = null == cache ? null : cache.get(businessId);
+    if (null != write && write.getState() == WriteCache.State.PENDING) {
+      try {
+        write = write.getSettled().get(config.getTransactionWaitTime(), TimeUnit.SECONDS);
+      } catch (TimeoutException e) {
+        write = null;
+      }
+    }
+    if (null != write && write.getState() == WriteCache.State.COMMITTED) {
+      return write.getHash();
+    }
+    return new String(queryChaincode("invoke", new String[]{"get", businessId}), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 最近一次发送的该businessId的写入，没有记录时返回null
+   */
+  public WriteCache.Entry getRecentWrite(String businessId){
+    WriteCache cache = writeCache;
+    return null == cache ? null : cache.get(businessId);
+  }
+
+  public WriteCache getWriteCache(){
+    return writeCache;
+  }
+
+  /**
+   * 设置写缓存，多个客户端可共享同一个缓存；设为null关闭写缓存
+   */
+  public void setWriteCache(WriteCache writeCache){
+    this.writeCache = writeCache;
   }
 
   public String sendQuery(String key) throws Exception{
 
-    TransactionInfo transactionInfo = getChannel().queryTransactionByID(key);
-    return transactionInfo.getTransactionID();
+    return queryTransaction(key).getTxID();
 
+  }
 
+  /**
+   * 查询已落块交易的区块号、验证结果和时间戳
+   * 已落块交易不会再变化，缓存无需失效；返回的是缓存内容的副本。
+   * 配置TransactionCacheBlockFill时同一区块中的其他交易一并缓存
+   */
+  public QueryTransData queryTransaction(String txID) throws Exception{
+    Channel channel = getChannel();
+    QueryTransData cached = TRANSACTION_CACHE.get(transactionCacheKey(channel, txID));
+    if (null != cached) {
+      return new QueryTransData(cached);
+    }
 
+    BlockInfo blockInfo = channel.queryBlockByTransactionID(txID);
+    boolean blockFill = config.isTransactionCacheBlockFill();
+    QueryTransData result = null;
+    for (BlockInfo.EnvelopeInfo envelopeInfo : blockInfo.getEnvelopeInfos()) {
+      boolean requested = txID.equals(envelopeInfo.getTransactionID());
+      if (!requested && !blockFill) {
+        continue;
+      }
+      QueryTransData data = new QueryTransData();
+      data.setTxID(envelopeInfo.getTransactionID());
+      data.setBlockNumber(blockInfo.getBlockNumber());
+      data.setValidationCode(envelopeInfo.getValidationCode());
+      data.setValid(envelopeInfo.isValid());
+      data.setTimestamp(envelopeInfo.getTimestamp());
+      TRANSACTION_CACHE.put(transactionCacheKey(channel, data.getTxID()), data);
+      if (requested) {
+        result = new QueryTransData(data);
+      }
+    }
+    if (null == result) {
+      throw new ServerException("transaction " + txID + " not found in block " + blockInfo.getBlockNumber(), System.currentTimeMillis());
+    }
+    return result;
+  }
 
+  /**
+   * 批量查询交易，缓存未命中的交易并行查询，同时进行的查询数不超过MaxQueriesInFlight
+   *
+   * @return 按输入顺序（去重后）排列的查询结果，查询失败的交易结果中带有异常
+   */
+  public Map<String, QueryTransResponse> sendQueries(Collection<String> txIDs) throws InterruptedException{
+    final Semaphore permits = new Semaphore(config.getMaxQueriesInFlight());
+    Map<String, CompletableFuture<QueryTransData>> futures = new LinkedHashMap<>();
+    for (String txID : txIDs) {
+      if (futures.containsKey(txID)) {
+        continue;
+      }
+      permits.acquire();
+      CompletableFuture<QueryTransData> future;
+      try {
+        future = CompletableFuture.supplyAsync(() -> {
+          try {
+            return queryTransaction(txID);
+          } catch (Exception e) {
+            throw new CompletionException(e);
+          }
+        }, executor);
+      } catch (RuntimeException e) {
+        permits.release();
+        future = FabricUtils.failedFuture(e);
+      }
+      futures.put(txID, future.whenComplete((data, e) -> permits.release()));
+    }
+
+    Map<String, QueryTransResponse> responses = new LinkedHashMap<>();
+    for (Map.Entry<String, CompletableFuture<QueryTransData>> entry : futures.entrySet()) {
+      QueryTransResponse response = new QueryTransResponse();
+      try {
+        response.setData(entry.getValue().join());
+      } catch (CompletionException e) {
+        response.setError(null == e.getCause() ? e : e.getCause());
+      }
+      responses.put(entry.getKey(), response);
+    }
+    return responses;
+  }
+
+  private static String transactionCacheKey(Channel channel, String txID) {
+    return channel.getName() + "|" + txID;
   }
 
-   /**
-   * 发送交易到orderer
+  /**
+   * 发送交易到orderer并等待落块，交易无效时抛出InvalidTransactionException
    */
   protected String sendTransactionToOrderer(Channel channel, Collection<ProposalResponse> successful)
     throws Exception{
-    return channel.sendTransaction(successful).thenApply(transactionEvent -> {
-      try {
-        return transactionEvent.getTransactionID();
-      } catch (Exception e) {
-        throw new RuntimeException(e);
+    return await(broadcast(channel, successful)).getTransactionID();
+  }
+
+  /**
+   * 等待future完成，异常时抛出原始异常
+   */
+  private static <T> T await(CompletableFuture<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      while (cause instanceof CompletionException && null != cause.getCause()) {
+        cause = cause.getCause();
       }
-    }).exceptionally(e -> {
-      e.printStackTrace();
-      return null;
-    }).get(config.getTransactionWaitTime(), TimeUnit.SECONDS);
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * 检查背书结果，任一背书失败则抛出异常
+   */
+  protected Collection<ProposalResponse> checkProposalResponses(Collection<ProposalResponse> transactionPropResp) throws ServerException{
+    if (null == transactionPropResp) {
+      throw new ServerException("no proposal response received from endorsers", System.currentTimeMillis());
+    }
+    Collection<ProposalResponse> successful = new LinkedList<>();
+    for (ProposalResponse response : transactionPropResp) {
+      if (response.getStatus() == ProposalResponse.Status.SUCCESS) {
+
+        successful.add(response);
+      } else {
+          throw  new ServerException(response.getMessage(),System.currentTimeMillis());
+      }
+    }
+    return successful;
+  }
+
+  protected CreateTransResponse newCreateTransResponse(String txID){
+    CreateTransData data = new CreateTransData();
+    data.setTxID(txID);
+    CreateTransResponse response = new CreateTransResponse();
+    response.setData(data);
+    return response;
   }
 
 
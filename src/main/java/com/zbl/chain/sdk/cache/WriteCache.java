@@ -0,0 +1,109 @@
+package com.zbl.chain.sdk.cache;
+
+import com.zbl.chain.sdk.utils.LruCache;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 最近写入的缓存，key为businessId
+ * 发送交易时记为PENDING，落块后记为COMMITTED，交易失败或验证不通过时记为INVALIDATED。
+ * 读取同一businessId时先查缓存，已提交的直接返回，等待中的等落块后返回，避免读到落块前的旧值
+ */
+public class WriteCache {
+
+    public enum State {
+        PENDING, COMMITTED, INVALIDATED
+    }
+
+    public static class Entry {
+        private final String businessId;
+        private final String hash;
+        private final CompletableFuture<Entry> settled = new CompletableFuture<>();
+        private volatile String txID;
+        private volatile State state = State.PENDING;
+        private volatile long updatedAt = System.currentTimeMillis();
+
+        Entry(String businessId, String hash) {
+            this.businessId = businessId;
+            this.hash = hash;
+        }
+
+        public String getBusinessId() {
+            return businessId;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * 未落块时为null
+         */
+        public String getTxID() {
+            return txID;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * 落块或失败后完成
+         */
+        public CompletableFuture<Entry> getSettled() {
+            return settled;
+        }
+    }
+
+    private final LruCache<String, Entry> entries;
+    private final long ttlMillis;
+
+    public WriteCache(int maxSize, long ttlMillis) {
+        this.entries = new LruCache<>(maxSize);
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 记录一次发送中的写入，覆盖同一businessId之前的记录
+     */
+    public Entry pending(String businessId, String hash) {
+        Entry entry = new Entry(businessId, hash);
+        entries.put(businessId, entry);
+        return entry;
+    }
+
+    public void committed(Entry entry, String txID) {
+        entry.txID = txID;
+        settle(entry, State.COMMITTED);
+    }
+
+    public void invalidated(Entry entry) {
+        settle(entry, State.INVALIDATED);
+    }
+
+    private void settle(Entry entry, State state) {
+        entry.state = state;
+        entry.updatedAt = System.currentTimeMillis();
+        entry.settled.complete(entry);
+    }
+
+    /**
+     * 查询最近写入，没有记录或记录已过期时返回null
+     */
+    public Entry get(String businessId) {
+        Entry entry = entries.get(businessId);
+        if (entry != null && System.currentTimeMillis() - entry.updatedAt > ttlMillis) {
+            entries.remove(businessId);
+            return null;
+        }
+        return entry;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,164 @@
+package com.zbl.chain.sdk.crypto;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.hyperledger.fabric.sdk.exception.CryptoException;
+import org.hyperledger.fabric.sdk.helper.Config;
+import org.hyperledger.fabric.sdk.security.CryptoPrimitives;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 高吞吐的CryptoSuite，产生有效的低S值ECDSA签名（DER编码）；k为随机数，不同于CryptoPrimitives的RFC 6979确定性k，
+ * 因此同一数据两次签名的结果不同。
+ * 每个线程复用已用私钥初始化的Signature和MessageDigest，免去每次签名重新创建实例和初始化私钥的开销。
+ * 只优化SHA2-256配置下的EC私钥签名，其他哈希算法、安全级别及其他方法沿用CryptoPrimitives
+ */
+public class FastCryptoSuite extends CryptoPrimitives {
+
+    private static final Provider PROVIDER = new BouncyCastleProvider();
+
+    private static final ExecutorService SIGN_EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "zbl-batch-sign");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Signer {
+        private PrivateKey key;
+        private BigInteger halfOrder;
+        private Signature signature;
+    }
+
+    private final String signatureAlgorithm;
+    private final boolean sha256;
+    private final ThreadLocal<Signer> signers = ThreadLocal.withInitial(Signer::new);
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    public FastCryptoSuite() throws Exception {
+        super();
+        init();
+        Properties properties = getProperties();
+        this.signatureAlgorithm = properties.getProperty(Config.SIGNATURE_ALGORITHM, "SHA256withECDSA");
+        this.sha256 = "SHA2".equals(properties.getProperty(Config.HASH_ALGORITHM, "SHA2"))
+                && "256".equals(properties.getProperty(Config.SECURITY_LEVEL, "256"));
+    }
+
+    @Override
+    public byte[] sign(PrivateKey key, byte[] plainText) throws CryptoException {
+        if (key == null) {
+            throw new CryptoException("Private key is null");
+        }
+        if (plainText == null || plainText.length == 0) {
+            throw new CryptoException("Data that to be signed is null or empty");
+        }
+        if (!sha256 || !(key instanceof ECPrivateKey)) {
+            return super.sign(key, plainText);
+        }
+        Signer signer = signers.get();
+        try {
+            if (signer.key != key) {
+                if (signer.signature == null) {
+                    signer.signature = Signature.getInstance(signatureAlgorithm, PROVIDER);
+                }
+                signer.signature.initSign(key);
+                signer.halfOrder = ((ECPrivateKey) key).getParams().getOrder().shiftRight(1);
+                signer.key = key;
+            }
+            signer.signature.update(plainText);
+            return toLowS(signer.signature.sign(), signer.halfOrder);
+        } catch (GeneralSecurityException | IOException e) {
+            signer.key = null;
+            throw new CryptoException("Failed to sign: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * fabric只接受S不大于n/2的签名
+     */
+    private static byte[] toLowS(byte[] der, BigInteger halfOrder) throws IOException {
+        ASN1Sequence sequence = ASN1Sequence.getInstance(der);
+        BigInteger r = ((ASN1Integer) sequence.getObjectAt(0)).getValue();
+        BigInteger s = ((ASN1Integer) sequence.getObjectAt(1)).getValue();
+        if (s.compareTo(halfOrder) <= 0) {
+            return der;
+        }
+        BigInteger order = halfOrder.shiftLeft(1).add(BigInteger.ONE);
+        return new DERSequence(new ASN1Encodable[]{new ASN1Integer(r), new ASN1Integer(order.subtract(s))}).getEncoded();
+    }
+
+    @Override
+    public byte[] hash(byte[] input) {
+        if (!sha256) {
+            return super.hash(input);
+        }
+        return digests.get().digest(input);
+    }
+
+    /**
+     * 用全部CPU核并行签名
+     *
+     * @return 与输入顺序一致的签名
+     */
+    public List<byte[]> signAll(PrivateKey key, List<byte[]> plainTexts) throws CryptoException {
+        int parallelism = Math.min(plainTexts.size(), Runtime.getRuntime().availableProcessors());
+        if (parallelism <= 1) {
+            List<byte[]> signatures = new ArrayList<>(plainTexts.size());
+            for (byte[] plainText : plainTexts) {
+                signatures.add(sign(key, plainText));
+            }
+            return signatures;
+        }
+
+        byte[][] signatures = new byte[plainTexts.size()][];
+        List<CompletableFuture<Void>> futures = new ArrayList<>(parallelism);
+        for (int worker = 0; worker < parallelism; worker++) {
+            final int first = worker;
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int i = first; i < signatures.length; i += parallelism) {
+                    try {
+                        signatures[i] = sign(key, plainTexts.get(i));
+                    } catch (CryptoException e) {
+                        throw new CompletionException(e);
+                    }
+                }
+            }, SIGN_EXECUTOR));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof CryptoException) {
+                throw (CryptoException) e.getCause();
+            }
+            throw e;
+        }
+        List<byte[]> result = new ArrayList<>(signatures.length);
+        Collections.addAll(result, signatures);
+        return result;
+    }
+}
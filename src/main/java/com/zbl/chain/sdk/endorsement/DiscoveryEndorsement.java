@@ -0,0 +1,76 @@
+package com.zbl.chain.sdk.endorsement;
+
+import com.zbl.chain.sdk.utils.FabricUtils;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.TransactionProposalRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 默认背书方式：通过服务发现选择节点，等待全部结果
+ * 没有近期的服务发现结果时由sdk发现并发送（同时缓存layouts）；有时按预计延迟选出layout及每组的节点，
+ * 逐个节点并行发送，记录每个节点自己的耗时
+ */
+public class DiscoveryEndorsement implements EndorsementStrategy {
+
+    /**
+     * layouts的有效期，与sdk服务发现的默认刷新间隔一致
+     */
+    static final long LAYOUT_MAX_AGE_MILLIS = 120_000;
+
+    private static final DiscoveryEndorsement INSTANCE = new DiscoveryEndorsement();
+
+    public static DiscoveryEndorsement getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public CompletableFuture<Collection<ProposalResponse>> endorse(Channel channel, TransactionProposalRequest request, Executor executor) {
+        if (!(FabricUtils.getEndorsementSelector() instanceof LatencyAwareEndorsementSelector)) {
+            return FabricUtils.sendProposalToPeersAsync(channel, request, executor);
+        }
+        List<EndorsementLayout> layouts = LatencyAwareEndorsementSelector.getInstance()
+                .getLayouts(channel.getName(), request.getChaincodeName(), LAYOUT_MAX_AGE_MILLIS);
+        Map<String, Peer> peers = PeerEndorsements.peersByEndpoint(channel);
+        EndorsementLayout layout = layouts == null ? null : PeerEndorsements.fastestLayout(layouts, peers);
+        if (layout == null) {
+            return FabricUtils.sendProposalToPeersAsync(channel, request, executor);
+        }
+
+        Set<String> picked = new LinkedHashSet<>();
+        double prior = PeerStats.priorLatency();
+        for (EndorsementLayout.Group group : layout.getGroups()) {
+            // 已选中的节点优先，多个组共用同一节点时不多发
+            group.getEndpoints().stream().filter(peers::containsKey)
+                    .sorted(Comparator.<String>comparingInt(e -> picked.contains(e) ? 0 : 1)
+                            .thenComparingDouble(e -> PeerStats.of(e).expectedLatency(prior)))
+                    .limit(group.getRequired())
+                    .forEach(picked::add);
+        }
+
+        if (!request.getTransactionContext().isPresent()) {
+            request.setTransactionContext(channel.newTransactionContext());
+        }
+        List<CompletableFuture<ProposalResponse>> futures = new ArrayList<>(picked.size());
+        for (String endpoint : picked) {
+            futures.add(PeerEndorsements.sendToPeer(channel, request, peers.get(endpoint), executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<ProposalResponse> responses = new ArrayList<>(futures.size());
+            for (CompletableFuture<ProposalResponse> future : futures) {
+                responses.add(future.join());
+            }
+            return responses;
+        });
+    }
+}
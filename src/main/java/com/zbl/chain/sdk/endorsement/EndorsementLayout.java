@@ -0,0 +1,98 @@
+package com.zbl.chain.sdk.endorsement;
+
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDChaindcode;
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDEndorser;
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDLayout;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 服务发现返回的一种满足背书策略的节点组合：每组中至少required个节点背书
+ */
+public class EndorsementLayout {
+
+    private final List<Group> groups;
+
+    EndorsementLayout(List<Group> groups) {
+        this.groups = Collections.unmodifiableList(groups);
+    }
+
+    static List<EndorsementLayout> of(SDChaindcode sdChaindcode) {
+        List<EndorsementLayout> layouts = new ArrayList<>();
+        for (SDLayout layout : sdChaindcode.getLayouts()) {
+            List<Group> groups = new ArrayList<>();
+            for (SDLayout.SDGroup group : layout.getSDLGroups()) {
+                List<String> endpoints = new ArrayList<>();
+                for (SDEndorser endorser : group.getEndorsers()) {
+                    endpoints.add(endorser.getEndpoint());
+                }
+                groups.add(new Group(group.getName(), group.getRequired(), endpoints));
+            }
+            layouts.add(new EndorsementLayout(groups));
+        }
+        return Collections.unmodifiableList(layouts);
+    }
+
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * endorsed中的节点是否满足该layout
+     */
+    public boolean isSatisfiedBy(Collection<String> endorsed) {
+        for (Group group : groups) {
+            if (group.count(endorsed) < group.getRequired()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "EndorsementLayout" + groups;
+    }
+
+    public static class Group {
+        private final String name;
+        private final int required;
+        private final List<String> endpoints;
+
+        Group(String name, int required, List<String> endpoints) {
+            this.name = name;
+            this.required = required;
+            this.endpoints = Collections.unmodifiableList(endpoints);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getRequired() {
+            return required;
+        }
+
+        public List<String> getEndpoints() {
+            return endpoints;
+        }
+
+        int count(Collection<String> endorsed) {
+            int count = 0;
+            for (String endpoint : endpoints) {
+                if (endorsed.contains(endpoint)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + required + " of " + endpoints + ")";
+        }
+    }
+}
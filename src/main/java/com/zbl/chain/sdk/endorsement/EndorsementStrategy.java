@@ -0,0 +1,20 @@
+package com.zbl.chain.sdk.endorsement;
+
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.TransactionProposalRequest;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 背书方式：将交易提议发送给背书节点，返回满足背书策略的背书结果
+ */
+public interface EndorsementStrategy {
+
+    /**
+     * @param executor 执行阻塞的背书请求
+     */
+    CompletableFuture<Collection<ProposalResponse>> endorse(Channel channel, TransactionProposalRequest request, Executor executor);
+}
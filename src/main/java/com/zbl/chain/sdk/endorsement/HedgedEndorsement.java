@@ -0,0 +1,193 @@
+package com.zbl.chain.sdk.endorsement;
+
+import com.google.protobuf.ByteString;
+import com.zbl.chain.sdk.exceptions.ServerException;
+import com.zbl.chain.sdk.limit.TokenBudget;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.TransactionProposalRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 对冲背书
+ * 按延迟选择layout并发送提议；某组节点在其延迟百分位数内未返回时，把同一提议（同一txID）再发给该组的备选节点，
+ * 先到的、payload一致的有效背书满足layout时生效。节点背书失败或结果不一致时立即换备选节点；
+ * 因超时触发的对冲受TokenBudget限制。
+ * 没有近期的服务发现结果时退回DiscoveryEndorsement，由其重新发现，节点或背书策略的变化因此能够生效
+ */
+public class HedgedEndorsement implements EndorsementStrategy {
+    private static final Log logger = LogFactory.getLog(HedgedEndorsement.class);
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "zbl-hedged-endorsement");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final double hedgePercentile;
+    private final long minHedgeDelayMillis;
+    private final TokenBudget budget;
+
+    /**
+     * @param hedgePercentile     等待节点延迟的该百分位数后发出对冲请求，如95
+     * @param minHedgeDelayMillis 对冲等待时间下限，节点没有统计时也使用该值
+     * @param hedgePercent        对冲请求占背书请求的最大百分比，如5
+     */
+    public HedgedEndorsement(double hedgePercentile, long minHedgeDelayMillis, double hedgePercent) {
+        this.hedgePercentile = hedgePercentile;
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+        this.budget = new TokenBudget(hedgePercent, 10);
+    }
+
+    @Override
+    public CompletableFuture<Collection<ProposalResponse>> endorse(Channel channel, TransactionProposalRequest request, Executor executor) {
+        List<EndorsementLayout> layouts = LatencyAwareEndorsementSelector.getInstance().getLayouts(channel.getName(), request.getChaincodeName(),
+                DiscoveryEndorsement.LAYOUT_MAX_AGE_MILLIS);
+        Map<String, Peer> peers = PeerEndorsements.peersByEndpoint(channel);
+        EndorsementLayout layout = layouts == null ? null : PeerEndorsements.fastestLayout(layouts, peers);
+        if (layout == null) {
+            return DiscoveryEndorsement.getInstance().endorse(channel, request, executor);
+        }
+        budget.onRequest();
+        if (!request.getTransactionContext().isPresent()) {
+            request.setTransactionContext(channel.newTransactionContext());
+        }
+        return new Round(channel, request, executor, layout, peers).start();
+    }
+
+    private final class Round {
+        private final Channel channel;
+        private final TransactionProposalRequest request;
+        private final Executor executor;
+        private final EndorsementLayout layout;
+        private final Map<String, Peer> peers;
+        private final CompletableFuture<Collection<ProposalResponse>> result = new CompletableFuture<>();
+
+        // 以下字段由this保护；按背书结果payload分组，只有payload相同的背书才能一起提交
+        private final Set<String> sent = new HashSet<>();
+        private final Set<String> pending = new HashSet<>();
+        private final Map<ByteString, Map<String, ProposalResponse>> endorsedByPayload = new HashMap<>();
+        private final List<String> failures = new ArrayList<>();
+        private final List<ScheduledFuture<?>> timers = new ArrayList<>();
+
+        private Round(Channel channel, TransactionProposalRequest request, Executor executor,
+                      EndorsementLayout layout, Map<String, Peer> peers) {
+            this.channel = channel;
+            this.request = request;
+            this.executor = executor;
+            this.layout = layout;
+            this.peers = peers;
+        }
+
+        private synchronized CompletableFuture<Collection<ProposalResponse>> start() {
+            for (EndorsementLayout.Group group : layout.getGroups()) {
+                for (int i = 0; i < group.getRequired(); i++) {
+                    sendToNext(group);
+                }
+            }
+            timers.add(timer.schedule(() -> result.completeExceptionally(new TimeoutException(
+                    "endorsement timed out after " + request.getProposalWaitTime() + "ms")), request.getProposalWaitTime(), TimeUnit.MILLISECONDS));
+            result.whenComplete((r, e) -> cancelTimers());
+            return result;
+        }
+
+        private synchronized void cancelTimers() {
+            timers.forEach(t -> t.cancel(false));
+        }
+
+        /**
+         * 发给组内尚未使用的预计延迟最低的节点
+         */
+        private boolean sendToNext(EndorsementLayout.Group group) {
+            double prior = PeerStats.priorLatency();
+            String endpoint = group.getEndpoints().stream()
+                    .filter(e -> peers.containsKey(e) && !sent.contains(e))
+                    .min(Comparator.comparingDouble(e -> PeerStats.of(e).expectedLatency(prior)))
+                    .orElse(null);
+            if (endpoint == null) {
+                return false;
+            }
+            sent.add(endpoint);
+            pending.add(endpoint);
+            PeerEndorsements.sendToPeer(channel, request, peers.get(endpoint), executor)
+                    .whenComplete((response, e) -> onResponse(endpoint, response, e));
+
+            long delay = Math.max(minHedgeDelayMillis, PeerStats.of(endpoint).latencyPercentile(hedgePercentile));
+            timers.add(timer.schedule(() -> hedge(group, endpoint), delay, TimeUnit.MILLISECONDS));
+            return true;
+        }
+
+        private synchronized void hedge(EndorsementLayout.Group group, String slowEndpoint) {
+            if (result.isDone() || !pending.contains(slowEndpoint) || agreed(group) >= group.getRequired()) {
+                return;
+            }
+            if (!budget.tryAcquire()) {
+                return;
+            }
+            if (sendToNext(group) && logger.isDebugEnabled()) {
+                logger.debug(String.format("Hedging endorsement of %s, %s is slow", request.getTransactionContext()
+                        .map(c -> c.getTxID()).orElse(""), slowEndpoint));
+            }
+        }
+
+        private synchronized void onResponse(String endpoint, ProposalResponse response, Throwable e) {
+            pending.remove(endpoint);
+            if (result.isDone()) {
+                return;
+            }
+            if (e == null && response.getStatus() == ProposalResponse.Status.SUCCESS) {
+                Map<String, ProposalResponse> endorsed = endorsedByPayload.computeIfAbsent(
+                        response.getProposalResponse().getPayload(), k -> new LinkedHashMap<>());
+                endorsed.put(endpoint, response);
+                if (layout.isSatisfiedBy(endorsed.keySet())) {
+                    result.complete(PeerEndorsements.select(layout, endorsed));
+                    return;
+                }
+            } else {
+                failures.add(endpoint + ": " + (e != null ? e.getMessage() : response.getMessage()));
+            }
+
+            // 同一组的背书结果不一致时也需要更多节点
+            for (EndorsementLayout.Group g : layout.getGroups()) {
+                while (agreed(g) + g.count(pending) < g.getRequired()) {
+                    if (!sendToNext(g)) {
+                        result.completeExceptionally(new ServerException("endorsement policy can not be satisfied: "
+                                + (endorsedByPayload.size() > 1 ? "endorsement payloads do not match, " : "") + failures,
+                                System.currentTimeMillis()));
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 组内结果一致的最多的成功背书数
+         */
+        private int agreed(EndorsementLayout.Group group) {
+            int max = 0;
+            for (Map<String, ProposalResponse> endorsed : endorsedByPayload.values()) {
+                max = Math.max(max, group.count(endorsed.keySet()));
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.zbl.chain.sdk.endorsement;
+
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.ServiceDiscovery;
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDChaindcode;
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDEndorser;
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDEndorserState;
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDLayout;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按节点预计延迟选择背书节点，替代ENDORSEMENT_SELECTION_RANDOM
+ * 每个layout中每组选预计延迟最低的required个节点，layout的代价为所选节点中最慢的一个，取代价最低的layout；
+ * 以小概率随机选择layout，使长时间未被选中的节点也能更新统计
+ *
+ * 需通过beginProposal/endProposal包住Channel.sendTransactionProposalToEndorsers：
+ * 选中的节点在本轮中计为进行中的请求，并缓存服务发现得到的layouts。sdk对所选节点并行发送并一起返回，
+ * 得不到单个节点的耗时，所以这里不记录延迟；节点延迟由DiscoveryEndorsement等逐节点发送的路径记录
+ */
+public class LatencyAwareEndorsementSelector implements ServiceDiscovery.EndorsementSelector {
+
+    private static final LatencyAwareEndorsementSelector INSTANCE = new LatencyAwareEndorsementSelector(0.05);
+
+    private final double explorationRate;
+    private final ThreadLocal<Round> round = new ThreadLocal<>();
+    private final ConcurrentMap<String, List<EndorsementLayout>> layouts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> discoveredAt = new ConcurrentHashMap<>();
+
+    /**
+     * @param explorationRate 随机选择layout的概率
+     */
+    public LatencyAwareEndorsementSelector(double explorationRate) {
+        this.explorationRate = explorationRate;
+    }
+
+    public static LatencyAwareEndorsementSelector getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public SDEndorserState endorserSelector(SDChaindcode sdChaindcode) {
+        List<SDLayout> layouts = sdChaindcode.getLayouts();
+        SDLayout bestLayout = null;
+        Collection<SDEndorser> bestEndorsers = null;
+        double bestCost = Double.MAX_VALUE;
+
+        boolean explore = layouts.size() > 1 && ThreadLocalRandom.current().nextDouble() < explorationRate;
+        int exploreIndex = explore ? ThreadLocalRandom.current().nextInt(layouts.size()) : -1;
+        double prior = PeerStats.priorLatency();
+
+        for (int i = 0; i < layouts.size(); i++) {
+            if (explore && i != exploreIndex) {
+                continue;
+            }
+            SDLayout layout = layouts.get(i);
+            Set<SDEndorser> endorsers = new HashSet<>();
+            double cost = 0;
+            for (SDLayout.SDGroup group : layout.getSDLGroups()) {
+                List<SDEndorser> candidates = new ArrayList<>(group.getEndorsers());
+                Map<SDEndorser, Double> expected = new HashMap<>();
+                for (SDEndorser endorser : candidates) {
+                    expected.put(endorser, PeerStats.of(endorser.getEndpoint()).expectedLatency(prior));
+                }
+                candidates.sort(Comparator.comparingDouble(expected::get));
+                for (SDEndorser endorser : candidates.subList(0, Math.min(group.getStillRequired(), candidates.size()))) {
+                    endorsers.add(endorser);
+                    cost = Math.max(cost, expected.get(endorser));
+                }
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestLayout = layout;
+                bestEndorsers = endorsers;
+            }
+        }
+
+        Round current = round.get();
+        if (current != null && current.layoutKey != null) {
+            this.layouts.put(current.layoutKey, EndorsementLayout.of(sdChaindcode));
+            this.discoveredAt.put(current.layoutKey, System.currentTimeMillis());
+        }
+
+        SDEndorserState state = new SDEndorserState();
+        state.setPickedLayout(bestLayout);
+        state.setPickedEndorsers(bestEndorsers);
+        track(bestEndorsers);
+        return state;
+    }
+
+    private void track(Collection<SDEndorser> endorsers) {
+        Round current = round.get();
+        if (current == null || endorsers == null) {
+            return;
+        }
+        for (SDEndorser endorser : endorsers) {
+            if (current.picked.add(endorser.getEndpoint())) {
+                PeerStats.of(endorser.getEndpoint()).onStart();
+            }
+        }
+    }
+
+    /**
+     * 在当前线程开始记录选中的节点
+     */
+    public void beginProposal() {
+        round.set(new Round(null));
+    }
+
+    /**
+     * 在当前线程开始记录选中的节点，并缓存该通道、链码最近一次服务发现得到的layouts
+     */
+    public void beginProposal(String channelName, String chaincodeName) {
+        round.set(new Round(layoutKey(channelName, chaincodeName)));
+    }
+
+    /**
+     * 最近一次服务发现得到的layouts，尚未发现过时返回null
+     */
+    public List<EndorsementLayout> getLayouts(String channelName, String chaincodeName) {
+        return layouts.get(layoutKey(channelName, chaincodeName));
+    }
+
+    /**
+     * 不早于maxAgeMillis之前通过服务发现得到的layouts，没有或已过期时返回null
+     */
+    public List<EndorsementLayout> getLayouts(String channelName, String chaincodeName, long maxAgeMillis) {
+        String key = layoutKey(channelName, chaincodeName);
+        Long at = discoveredAt.get(key);
+        if (at == null || System.currentTimeMillis() - at > maxAgeMillis) {
+            return null;
+        }
+        return layouts.get(key);
+    }
+
+    private static String layoutKey(String channelName, String chaincodeName) {
+        return channelName + "|" + chaincodeName;
+    }
+
+    /**
+     * 结束记录，选中的节点不再计为进行中的请求
+     *
+     * @param responses 背书结果，背书异常时为null
+     */
+    public void endProposal(Collection<ProposalResponse> responses) {
+        Round current = round.get();
+        round.remove();
+        if (current == null) {
+            return;
+        }
+        for (String endpoint : current.picked) {
+            PeerStats.of(endpoint).onAbandon();
+        }
+    }
+
+    private static final class Round {
+        private final String layoutKey;
+        private final Set<String> picked = new LinkedHashSet<>();
+
+        private Round(String layoutKey) {
+            this.layoutKey = layoutKey;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.zbl.chain.sdk.endorsement;
+
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.TransactionProposalRequest;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 逐个节点发送背书请求的公共方法
+ */
+class PeerEndorsements {
+
+    private PeerEndorsements() {
+    }
+
+    /**
+     * 通道中的节点，key为endpoint
+     */
+    static Map<String, Peer> peersByEndpoint(Channel channel) {
+        Map<String, Peer> peers = new HashMap<>();
+        for (Peer peer : channel.getPeers()) {
+            peers.put(PeerStats.endpointOf(peer), peer);
+        }
+        return peers;
+    }
+
+    /**
+     * 把提议发送给单个节点并记录该节点的统计
+     * 调用前需给request设置TransactionContext，使发给不同节点的是同一个提议（同一txID）
+     */
+    static CompletableFuture<ProposalResponse> sendToPeer(Channel channel, TransactionProposalRequest request, Peer peer,
+                                                         Executor executor) {
+        PeerStats stats = PeerStats.of(peer);
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            stats.onStart();
+            ProposalResponse response = null;
+            try {
+                Collection<ProposalResponse> responses = channel.sendTransactionProposal(request, Collections.singletonList(peer));
+                response = responses.isEmpty() ? null : responses.iterator().next();
+                if (response == null) {
+                    throw new CompletionException(new ProposalException("no proposal response from " + peer));
+                }
+                return response;
+            } catch (ProposalException | InvalidArgumentException e) {
+                throw new CompletionException(e);
+            } finally {
+                long latency = System.currentTimeMillis() - start;
+                if (response != null && response.getStatus() == ProposalResponse.Status.SUCCESS) {
+                    stats.onSuccess(latency);
+                } else {
+                    stats.onFailure(latency);
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * 按预计延迟选择代价最低的layout
+     */
+    static EndorsementLayout fastestLayout(Collection<EndorsementLayout> layouts, Map<String, Peer> peers) {
+        EndorsementLayout best = null;
+        double bestCost = Double.MAX_VALUE;
+        double prior = PeerStats.priorLatency();
+        for (EndorsementLayout layout : layouts) {
+            double cost = 0;
+            for (EndorsementLayout.Group group : layout.getGroups()) {
+                double[] latencies = group.getEndpoints().stream().filter(peers::containsKey)
+                        .mapToDouble(e -> PeerStats.of(e).expectedLatency(prior)).sorted().toArray();
+                if (latencies.length < group.getRequired()) {
+                    cost = Double.MAX_VALUE;
+                    break;
+                }
+                if (group.getRequired() > 0) {
+                    cost = Math.max(cost, latencies[group.getRequired() - 1]);
+                }
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = layout;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 从payload一致的背书中为layout的每组取required个
+     */
+    static Collection<ProposalResponse> select(EndorsementLayout layout, Map<String, ProposalResponse> endorsed) {
+        Map<String, ProposalResponse> selected = new LinkedHashMap<>();
+        for (EndorsementLayout.Group group : layout.getGroups()) {
+            int taken = 0;
+            for (String endpoint : group.getEndpoints()) {
+                if (taken >= group.getRequired()) {
+                    break;
+                }
+                if (endorsed.containsKey(endpoint)) {
+                    selected.put(endpoint, endorsed.get(endpoint));
+                    taken++;
+                }
+            }
+        }
+        return new ArrayList<>(selected.values());
+    }
+}
@@ -0,0 +1,176 @@
+package com.zbl.chain.sdk.endorsement;
+
+import org.hyperledger.fabric.sdk.Peer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 背书节点统计：EWMA延迟、EWMA错误率、进行中的请求数
+ * 按节点endpoint(host:port)进程内共享
+ */
+public class PeerStats {
+
+    private static final double ALPHA = 0.2;
+    private static final int WINDOW = 128;
+    /**
+     * 所有节点都没有样本时的先验延迟，单位毫秒
+     */
+    private static final double DEFAULT_PRIOR_LATENCY = 100;
+    private static final ConcurrentMap<String, PeerStats> stats = new ConcurrentHashMap<>();
+
+    private final String endpoint;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private double latencyEwma;
+    private double errorRate;
+    private long samples;
+    private final long[] recent = new long[WINDOW];
+
+    private PeerStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public static PeerStats of(String endpoint) {
+        return stats.computeIfAbsent(endpoint, PeerStats::new);
+    }
+
+    public static PeerStats of(Peer peer) {
+        return of(endpointOf(peer));
+    }
+
+    /**
+     * 所有节点的统计，key为endpoint
+     */
+    public static Map<String, PeerStats> getAll() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * peer url去掉协议部分，与服务发现返回的endpoint格式一致
+     */
+    public static String endpointOf(Peer peer) {
+        String url = peer.getUrl();
+        int idx = url.indexOf("://");
+        return idx < 0 ? url : url.substring(idx + 3);
+    }
+
+    public void onStart() {
+        outstanding.incrementAndGet();
+    }
+
+    public void onSuccess(long latencyMillis) {
+        outstanding.decrementAndGet();
+        record(latencyMillis, 0);
+    }
+
+    public void onFailure(long latencyMillis) {
+        outstanding.decrementAndGet();
+        record(latencyMillis, 1);
+    }
+
+    /**
+     * 请求结束但无法得到该节点自己的耗时，只减少进行中的请求数
+     */
+    public void onAbandon() {
+        outstanding.decrementAndGet();
+    }
+
+    private synchronized void record(long latencyMillis, int error) {
+        recent[(int) (samples % WINDOW)] = latencyMillis;
+        if (samples++ == 0) {
+            latencyEwma = latencyMillis;
+            errorRate = error;
+        } else {
+            latencyEwma += ALPHA * (latencyMillis - latencyEwma);
+            errorRate += ALPHA * (error - errorRate);
+        }
+    }
+
+    /**
+     * 预计延迟，先验延迟现算；一次选择中比较多个节点时应先取priorLatency()再调用expectedLatency(prior)
+     */
+    public double expectedLatency() {
+        return expectedLatency(priorLatency());
+    }
+
+    /**
+     * 预计延迟：EWMA延迟按排队请求数放大，再按成功率折算
+     * 没有样本的节点以prior作为延迟，既不会总被优先选中，也不会一直得不到尝试
+     *
+     * @param prior 没有样本时使用的延迟，见priorLatency()
+     */
+    public double expectedLatency(double prior) {
+        double latency;
+        double error;
+        synchronized (this) {
+            latency = samples == 0 ? prior : latencyEwma;
+            error = errorRate;
+        }
+        return latency * (outstanding.get() + 1) / Math.max(0.05, 1 - error);
+    }
+
+    /**
+     * 先验延迟：已有样本的节点的平均EWMA延迟，都没有样本时为DEFAULT_PRIOR_LATENCY；需遍历所有节点，每次选择只算一次
+     */
+    public static double priorLatency() {
+        double sum = 0;
+        int count = 0;
+        for (PeerStats peer : stats.values()) {
+            synchronized (peer) {
+                if (peer.samples > 0) {
+                    sum += peer.latencyEwma;
+                    count++;
+                }
+            }
+        }
+        return count == 0 ? DEFAULT_PRIOR_LATENCY : sum / count;
+    }
+
+    /**
+     * 最近WINDOW次请求延迟的百分位数，没有样本时返回-1
+     *
+     * @param percentile 0-100
+     */
+    public long latencyPercentile(double percentile) {
+        long[] window;
+        synchronized (this) {
+            if (samples == 0) {
+                return -1;
+            }
+            window = Arrays.copyOf(recent, (int) Math.min(samples, WINDOW));
+        }
+        Arrays.sort(window);
+        int idx = (int) Math.ceil(percentile / 100 * window.length) - 1;
+        return window[Math.max(0, Math.min(idx, window.length - 1))];
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public synchronized double getLatencyEwma() {
+        return latencyEwma;
+    }
+
+    public synchronized double getErrorRate() {
+        return errorRate;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("PeerStats{endpoint=%s, latencyEwma=%.1fms, errorRate=%.3f, outstanding=%d, samples=%d}",
+                endpoint, latencyEwma, errorRate, outstanding.get(), samples);
+    }
+}
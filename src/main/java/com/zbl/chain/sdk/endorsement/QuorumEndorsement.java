@@ -0,0 +1,126 @@
+package com.zbl.chain.sdk.endorsement;
+
+import com.google.protobuf.ByteString;
+import com.zbl.chain.sdk.exceptions.ServerException;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.TransactionProposalRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 法定数量背书
+ * 把提议并行发给所有layout中的全部候选节点，一旦有一组结果一致的成功背书满足任一layout即返回，
+ * 其余结果忽略；单个节点失败不影响仍可满足策略的交易。
+ * 没有近期的服务发现结果时退回DiscoveryEndorsement，由其重新发现，节点或背书策略的变化因此能够生效
+ */
+public class QuorumEndorsement implements EndorsementStrategy {
+
+    private static final QuorumEndorsement INSTANCE = new QuorumEndorsement();
+
+    public static QuorumEndorsement getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public CompletableFuture<Collection<ProposalResponse>> endorse(Channel channel, TransactionProposalRequest request, Executor executor) {
+        List<EndorsementLayout> layouts = LatencyAwareEndorsementSelector.getInstance().getLayouts(channel.getName(), request.getChaincodeName(),
+                DiscoveryEndorsement.LAYOUT_MAX_AGE_MILLIS);
+        Map<String, Peer> peers = PeerEndorsements.peersByEndpoint(channel);
+        Set<String> candidates = new LinkedHashSet<>();
+        if (layouts != null) {
+            for (EndorsementLayout layout : layouts) {
+                for (EndorsementLayout.Group group : layout.getGroups()) {
+                    for (String endpoint : group.getEndpoints()) {
+                        if (peers.containsKey(endpoint)) {
+                            candidates.add(endpoint);
+                        }
+                    }
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return DiscoveryEndorsement.getInstance().endorse(channel, request, executor);
+        }
+
+        if (!request.getTransactionContext().isPresent()) {
+            request.setTransactionContext(channel.newTransactionContext());
+        }
+        Round round = new Round(layouts, candidates);
+        for (String endpoint : candidates) {
+            PeerEndorsements.sendToPeer(channel, request, peers.get(endpoint), executor)
+                    .whenComplete((response, e) -> round.onResponse(endpoint, response, e));
+        }
+        return round.result;
+    }
+
+    private static final class Round {
+        private final List<EndorsementLayout> layouts;
+        private final Set<String> pending;
+        private final CompletableFuture<Collection<ProposalResponse>> result = new CompletableFuture<>();
+
+        // 以下字段由this保护；按背书结果payload分组，只有payload相同的背书才能一起提交
+        private final Map<ByteString, Map<String, ProposalResponse>> endorsedByPayload = new HashMap<>();
+        private final List<String> failures = new ArrayList<>();
+
+        private Round(List<EndorsementLayout> layouts, Set<String> candidates) {
+            this.layouts = layouts;
+            this.pending = new HashSet<>(candidates);
+        }
+
+        private synchronized void onResponse(String endpoint, ProposalResponse response, Throwable e) {
+            pending.remove(endpoint);
+            if (result.isDone()) {
+                return;
+            }
+            if (e == null && response.getStatus() == ProposalResponse.Status.SUCCESS) {
+                Map<String, ProposalResponse> endorsed = endorsedByPayload.computeIfAbsent(
+                        response.getProposalResponse().getPayload(), k -> new LinkedHashMap<>());
+                endorsed.put(endpoint, response);
+                for (EndorsementLayout layout : layouts) {
+                    if (layout.isSatisfiedBy(endorsed.keySet())) {
+                        result.complete(PeerEndorsements.select(layout, endorsed));
+                        return;
+                    }
+                }
+            } else {
+                failures.add(endpoint + ": " + (e != null ? e.getMessage() : response.getMessage()));
+            }
+
+            if (!satisfiable()) {
+                result.completeExceptionally(new ServerException("endorsement policy can not be satisfied: " + failures,
+                        System.currentTimeMillis()));
+            }
+        }
+
+        /**
+         * 还在等待的节点加上某一组一致的背书能否满足任一layout
+         */
+        private boolean satisfiable() {
+            Collection<Map<String, ProposalResponse>> classes = endorsedByPayload.isEmpty()
+                    ? Collections.singletonList(new HashMap<>()) : endorsedByPayload.values();
+            for (Map<String, ProposalResponse> endorsed : classes) {
+                Set<String> possible = new HashSet<>(pending);
+                possible.addAll(endorsed.keySet());
+                for (EndorsementLayout layout : layouts) {
+                    if (layout.isSatisfiedBy(possible)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
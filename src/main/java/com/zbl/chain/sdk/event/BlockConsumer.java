@@ -0,0 +1,15 @@
+package com.zbl.chain.sdk.event;
+
+import org.hyperledger.fabric.sdk.BlockEvent;
+
+/**
+ * 区块处理，按区块号顺序调用，每个区块只调用一次
+ */
+@FunctionalInterface
+public interface BlockConsumer {
+
+    /**
+     * 抛出异常时区块流停止，该区块不计入检查点
+     */
+    void accept(BlockEvent blockEvent) throws Exception;
+}
@@ -0,0 +1,191 @@
+package com.zbl.chain.sdk.event;
+
+import com.zbl.chain.sdk.FabricConfig;
+import com.zbl.chain.sdk.FabricOrg;
+import com.zbl.chain.sdk.utils.FabricUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.QueuedBlockEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 带检查点的区块流
+ * 从检查点文件记录的区块之后开始接收区块，按顺序交给BlockConsumer处理，处理完成后保存检查点，
+ * 重启后从上次处理到的位置继续。区块先进入有界队列，队列满时sdk的事件线程等待，向peer的推送形成反压
+ */
+public class BlockStream implements AutoCloseable {
+    private static final Log logger = LogFactory.getLog(BlockStream.class);
+
+    private final String channelID;
+    private final FabricOrg org;
+    private final FabricConfig config;
+    private final Path checkpointFile;
+    private final BlockConsumer consumer;
+
+    private int queueCapacity = 64;
+    private int checkpointInterval = 1;
+    private boolean filteredBlocks;
+
+    private final CompletableFuture<Void> termination = new CompletableFuture<>();
+    private volatile long lastProcessedBlock = -1;
+    private volatile boolean running;
+    private HFClient client;
+    private Channel channel;
+    private Thread worker;
+
+    public BlockStream(String channelID, FabricOrg org, FabricConfig config, Path checkpointFile, BlockConsumer consumer) {
+        this.channelID = channelID;
+        this.org = org;
+        this.config = config;
+        this.checkpointFile = checkpointFile;
+        this.consumer = consumer;
+    }
+
+    /**
+     * 等待处理的区块数上限，默认64
+     */
+    public BlockStream setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * 每处理多少个区块保存一次检查点，默认每个区块都保存
+     */
+    public BlockStream setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    /**
+     * 只接收过滤后的区块（交易ID、验证结果），数据量小得多
+     */
+    public BlockStream setFilteredBlocks(boolean filteredBlocks) {
+        this.filteredBlocks = filteredBlocks;
+        return this;
+    }
+
+    public synchronized void start() throws Exception {
+        if (running) {
+            return;
+        }
+        lastProcessedBlock = readCheckpoint();
+        client = FabricUtils.getClient(org.getPeerAdmin());
+        channel = FabricUtils.getEventChannel(channelID, org, client, config, lastProcessedBlock + 1, filteredBlocks);
+
+        BlockingQueue<QueuedBlockEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+        channel.registerBlockListener(queue, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        running = true;
+        worker = new Thread(() -> run(queue), "zbl-block-stream-" + channelID);
+        worker.setDaemon(true);
+        worker.start();
+        logger.info(String.format("Block stream on %s started from block %d", channelID, lastProcessedBlock + 1));
+    }
+
+    private void run(BlockingQueue<QueuedBlockEvent> queue) {
+        long sinceCheckpoint = 0;
+        try {
+            while (running) {
+                QueuedBlockEvent queued = queue.poll(1, TimeUnit.SECONDS);
+                if (queued == null) {
+                    continue;
+                }
+                BlockEvent blockEvent = queued.getBlockEvent();
+                // 每个事件节点都会推送同一区块，只处理第一次收到的
+                if (blockEvent.getBlockNumber() <= lastProcessedBlock) {
+                    continue;
+                }
+                consumer.accept(blockEvent);
+                lastProcessedBlock = blockEvent.getBlockNumber();
+                if (++sinceCheckpoint >= checkpointInterval) {
+                    writeCheckpoint(lastProcessedBlock);
+                    sinceCheckpoint = 0;
+                }
+            }
+            termination.complete(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            termination.complete(null);
+        } catch (Exception e) {
+            logger.error(String.format("Block stream on %s stopped after block %d", channelID, lastProcessedBlock), e);
+            termination.completeExceptionally(e);
+        } finally {
+            if (sinceCheckpoint > 0) {
+                try {
+                    writeCheckpoint(lastProcessedBlock);
+                } catch (IOException e) {
+                    logger.warn("Failed to save block stream checkpoint", e);
+                }
+            }
+            shutdownChannel();
+        }
+    }
+
+    private synchronized void shutdownChannel() {
+        running = false;
+        if (channel != null) {
+            channel.shutdown(true);
+            channel = null;
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return -1;
+        }
+        String content = new String(Files.readAllBytes(checkpointFile), UTF_8).trim();
+        return content.isEmpty() ? -1 : Long.parseLong(content);
+    }
+
+    /**
+     * 先写临时文件再原子替换，进程中断时检查点文件不会损坏
+     */
+    private void writeCheckpoint(long blockNumber) throws IOException {
+        Path parent = checkpointFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.write(tmp, Long.toString(blockNumber).getBytes(UTF_8));
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 最后处理完成的区块号，尚未处理过区块时为-1
+     */
+    public long getLastProcessedBlock() {
+        return lastProcessedBlock;
+    }
+
+    /**
+     * 区块流停止时完成，处理区块出错时以该异常结束
+     */
+    public CompletableFuture<Void> getTermination() {
+        return termination;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        Thread w;
+        synchronized (this) {
+            running = false;
+            w = worker;
+        }
+        if (w != null && w != Thread.currentThread()) {
+            w.join();
+        }
+    }
+}
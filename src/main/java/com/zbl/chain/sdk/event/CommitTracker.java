@@ -0,0 +1,164 @@
+package com.zbl.chain.sdk.event;
+
+import com.zbl.chain.sdk.exceptions.InvalidTransactionException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 交易落块跟踪
+ * 每个通道只注册一个区块监听，按txID查找等待中的交易，一个区块内的交易一次处理完；
+ * 超时由共享的调度线程处理，不为每笔交易单独建立等待线程；
+ * 调度线程同时定期清理已关闭通道的跟踪器，覆盖通过setChannel注入、不经ChannelRegistry管理的通道
+ */
+public class CommitTracker {
+    private static final Log logger = LogFactory.getLog(CommitTracker.class);
+
+    private static final ConcurrentMap<Channel, CommitTracker> trackers = new ConcurrentHashMap<>();
+
+    private static final long SWEEP_INTERVAL_SECONDS = 30;
+
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "zbl-commit-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // 交易落块后取消的超时任务立即移出队列，避免高吞吐时堆积
+        timer.setRemoveOnCancelPolicy(true);
+        timer.scheduleWithFixedDelay(CommitTracker::sweep, SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private final Channel channel;
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final String listenerHandle;
+
+    private CommitTracker(Channel channel) throws InvalidArgumentException {
+        this.channel = channel;
+        this.listenerHandle = channel.registerBlockListener(this::onBlock);
+    }
+
+    /**
+     * 获取通道的跟踪器，首次调用时注册区块监听
+     */
+    public static CommitTracker of(Channel channel) {
+        return trackers.computeIfAbsent(channel, ch -> {
+            try {
+                return new CommitTracker(ch);
+            } catch (InvalidArgumentException e) {
+                throw new IllegalStateException("failed to register block listener on channel " + ch.getName(), e);
+            }
+        });
+    }
+
+    /**
+     * 通道关闭时移除跟踪器，未落块的交易以异常结束
+     */
+    public static void remove(Channel channel) {
+        CommitTracker tracker = trackers.remove(channel);
+        if (tracker != null) {
+            tracker.close();
+        }
+    }
+
+    /**
+     * 移除通道已关闭的跟踪器
+     */
+    private static void sweep() {
+        for (Channel channel : trackers.keySet()) {
+            if (channel.isShutdown()) {
+                remove(channel);
+            }
+        }
+    }
+
+    /**
+     * 开始跟踪一笔交易，需在交易发送到orderer之前调用，避免错过区块
+     *
+     * @return 交易落块后完成，交易无效或超时时以异常结束
+     */
+    public CompletableFuture<BlockEvent.TransactionEvent> track(String txID, long timeout, TimeUnit unit) {
+        Pending p = new Pending();
+        Pending existing = pending.putIfAbsent(txID, p);
+        if (existing != null) {
+            return existing.future;
+        }
+        p.timeout = timer.schedule(() -> {
+            if (pending.remove(txID, p)) {
+                p.future.completeExceptionally(new TimeoutException(String.format("transaction %s not committed within %d %s", txID, timeout, unit)));
+            }
+        }, timeout, unit);
+        return p.future;
+    }
+
+    /**
+     * 交易未能发送到orderer时结束跟踪
+     */
+    public void fail(String txID, Throwable e) {
+        Pending p = pending.remove(txID);
+        if (p != null) {
+            p.cancelTimeout();
+            p.future.completeExceptionally(e);
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void onBlock(BlockEvent blockEvent) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (BlockEvent.TransactionEvent transactionEvent : blockEvent.getTransactionEvents()) {
+            Pending p = pending.remove(transactionEvent.getTransactionID());
+            if (p == null) {
+                continue;
+            }
+            p.cancelTimeout();
+            if (transactionEvent.isValid()) {
+                p.future.complete(transactionEvent);
+            } else {
+                p.future.completeExceptionally(new InvalidTransactionException(transactionEvent.getTransactionID(),
+                        transactionEvent.getValidationCode(), System.currentTimeMillis()));
+            }
+        }
+    }
+
+    private void close() {
+        try {
+            if (!channel.isShutdown()) {
+                channel.unregisterBlockListener(listenerHandle);
+            }
+        } catch (InvalidArgumentException e) {
+            logger.warn("Failed to unregister block listener", e);
+        }
+        IllegalStateException closed = new IllegalStateException("channel " + channel.getName() + " is shut down");
+        for (String txID : pending.keySet()) {
+            fail(txID, closed);
+        }
+    }
+
+    private static final class Pending {
+        private final CompletableFuture<BlockEvent.TransactionEvent> future = new CompletableFuture<>();
+        private volatile ScheduledFuture<?> timeout;
+
+        private void cancelTimeout() {
+            ScheduledFuture<?> t = timeout;
+            if (t != null) {
+                t.cancel(false);
+            }
+        }
+    }
+}
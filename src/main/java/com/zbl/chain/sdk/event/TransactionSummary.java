@@ -0,0 +1,76 @@
+package com.zbl.chain.sdk.event;
+
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 区块中一笔交易的摘要
+ */
+public class TransactionSummary {
+
+    private final String txID;
+    private final long blockNumber;
+    private final int validationCode;
+    private final boolean valid;
+    /**
+     * 过滤区块中没有时间戳，为null
+     */
+    private final Date timestamp;
+
+    public TransactionSummary(String txID, long blockNumber, int validationCode, boolean valid, Date timestamp) {
+        this.txID = txID;
+        this.blockNumber = blockNumber;
+        this.validationCode = validationCode;
+        this.valid = valid;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * 提取区块中调用了指定链码的交易；chaincodeName为null或区块为过滤区块时返回全部交易
+     */
+    public static List<TransactionSummary> of(BlockEvent blockEvent, String chaincodeName) {
+        List<TransactionSummary> summaries = new ArrayList<>();
+        for (BlockEvent.TransactionEvent transactionEvent : blockEvent.getTransactionEvents()) {
+            if (chaincodeName != null && !blockEvent.isFiltered() && !invokes(transactionEvent, chaincodeName)) {
+                continue;
+            }
+            summaries.add(new TransactionSummary(transactionEvent.getTransactionID(), blockEvent.getBlockNumber(),
+                    transactionEvent.getValidationCode(), transactionEvent.isValid(),
+                    blockEvent.isFiltered() ? null : transactionEvent.getTimestamp()));
+        }
+        return summaries;
+    }
+
+    private static boolean invokes(BlockInfo.TransactionEnvelopeInfo transaction, String chaincodeName) {
+        for (BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo action : transaction.getTransactionActionInfos()) {
+            if (chaincodeName.equals(action.getChaincodeIDName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getTxID() {
+        return txID;
+    }
+
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public int getValidationCode() {
+        return validationCode;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+}
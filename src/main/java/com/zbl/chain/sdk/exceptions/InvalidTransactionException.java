@@ -0,0 +1,29 @@
+package com.zbl.chain.sdk.exceptions;
+
+
+/**
+ * 交易已落块但未通过验证
+ */
+public class InvalidTransactionException extends ServerException {
+
+  private String txID;
+
+  /**
+   * TxValidationCode
+   */
+  private int validationCode;
+
+  public String getTxID() {
+    return txID;
+  }
+
+  public int getValidationCode() {
+    return validationCode;
+  }
+
+  public InvalidTransactionException(String txID, int validationCode, Long timestamp) {
+    super(String.format("transaction %s is invalid, validation code %d", txID, validationCode), timestamp);
+    this.txID = txID;
+    this.validationCode = validationCode;
+  }
+}
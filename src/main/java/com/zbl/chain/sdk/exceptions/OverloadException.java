@@ -0,0 +1,19 @@
+package com.zbl.chain.sdk.exceptions;
+
+
+/**
+ * 并发数已达到自适应上限，请求被直接拒绝
+ */
+public class OverloadException extends ClientException {
+
+  private int limit;
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public OverloadException(String name, int limit) {
+    super(String.format("%s overloaded: %d requests in flight", name, limit));
+    this.limit = limit;
+  }
+}
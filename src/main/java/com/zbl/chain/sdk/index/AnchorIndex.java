@@ -0,0 +1,455 @@
+package com.zbl.chain.sdk.index;
+
+import com.zbl.chain.sdk.FabricConfig;
+import com.zbl.chain.sdk.FabricOrg;
+import com.zbl.chain.sdk.event.BlockStream;
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import com.zbl.chain.sdk.utils.BatchCodec;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.TxReadWriteSetInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 本地businessId索引
+ * 跟随已落块区块，从put/putBatch交易的写集中提取businessId -> (txID, 区块号, hash)，追加写入内存映射文件，
+ * 查询只访问本地内存。文件只是追加日志，查询用的开放寻址哈希表只保存在堆内存中，
+ * 每次打开都要完整扫描文件重建，启动耗时与记录数成正比。
+ * 区块消费进度保存在同目录的.checkpoint文件中，重启后从上次索引的区块继续
+ * <p>
+ * 文件格式：int magic | int version | long 写入位置 | 记录...
+ * 记录：int keyLen | key | int txIDLen | txID | long blockNumber | int hashLen | hash | int crc32
+ * 文件头的写入位置可能先于记录内容落盘，打开时遇到越界或crc不符的记录即视为写入中断，丢弃其后内容；
+ * 丢弃的记录所在区块尚未写入检查点，会被重新索引。旧版本文件连同检查点一起重建。
+ * 单个文件最大2GB
+ */
+public class AnchorIndex implements AutoCloseable {
+    private static final Log logger = LogFactory.getLog(AnchorIndex.class);
+
+    private static final int MAGIC = 0x5A424C49;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int POSITION_OFFSET = 8;
+    private static final int INITIAL_SIZE = 16 * 1024 * 1024;
+    private static final String INVOKE = "invoke";
+    private static final String PUT = "put";
+    private static final String PUT_BATCH = "putBatch";
+
+    private final Path file;
+    private final String chaincodeName;
+    private final FileChannel fileChannel;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private MappedByteBuffer buffer;
+    private int position;
+    /**
+     * 开放寻址哈希表，存放记录偏移，0表示空槽
+     */
+    private int[] offsets;
+    private int[] hashes;
+    private int size;
+    private BlockStream blockStream;
+
+    public AnchorIndex(Path file, String chaincodeName) throws IOException {
+        this.file = file;
+        this.chaincodeName = chaincodeName;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            parent.toFile().mkdirs();
+        }
+        this.fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    private void load() throws IOException {
+        long length = fileChannel.size();
+        buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(length, INITIAL_SIZE));
+        if (length < HEADER_SIZE) {
+            writeHeader();
+        } else if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("not an anchor index file: " + file);
+        } else if (buffer.getInt(4) != VERSION) {
+            logger.warn(String.format("Anchor index %s has version %d, rebuilding from the first block", file, buffer.getInt(4)));
+            Files.deleteIfExists(checkpointFile());
+            writeHeader();
+        }
+        int limit = (int) Math.min(buffer.getLong(POSITION_OFFSET), buffer.capacity());
+
+        offsets = new int[1024];
+        hashes = new int[1024];
+        int offset = HEADER_SIZE;
+        while (offset < limit) {
+            int next = validRecordEnd(offset, limit);
+            if (next < 0) {
+                logger.warn(String.format("Anchor index %s is truncated at %d, discarding %d bytes", file, offset, limit - offset));
+                break;
+            }
+            insert(offset, hash(readKey(offset)));
+            offset = next;
+        }
+        position = offset;
+        buffer.putLong(POSITION_OFFSET, position);
+        logger.info(String.format("Anchor index %s loaded with %d entries", file, size));
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(POSITION_OFFSET, HEADER_SIZE);
+    }
+
+    private Path checkpointFile() {
+        return Paths.get(file.toString() + ".checkpoint");
+    }
+
+    /**
+     * 校验记录的各段长度不越界且crc一致
+     *
+     * @return 下一条记录的偏移，记录不完整时返回-1
+     */
+    private int validRecordEnd(int offset, int limit) {
+        int p = offset;
+        for (int field = 0; field < 3; field++) {
+            if (limit - p < 4) {
+                return -1;
+            }
+            int len = buffer.getInt(p);
+            if (len < 0 || len > limit - p - 4) {
+                return -1;
+            }
+            p += 4 + len;
+            if (field == 1) {
+                if (limit - p < 8) {
+                    return -1;
+                }
+                p += 8;
+            }
+        }
+        if (limit - p < 4 || buffer.getInt(p) != crc(offset, p)) {
+            return -1;
+        }
+        return p + 4;
+    }
+
+    private int crc(int from, int to) {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.limit(to).position(from);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 跟随通道区块更新索引，区块消费进度保存在索引文件同目录下
+     */
+    public synchronized void start(String channelID, FabricOrg org, FabricConfig config) throws Exception {
+        if (blockStream != null) {
+            return;
+        }
+        blockStream = new BlockStream(channelID, org, config, checkpointFile(), this::index);
+        blockStream.start();
+    }
+
+    /**
+     * 按businessId查询，未索引时返回null
+     */
+    public AnchorRecord get(String businessId) {
+        byte[] key = businessId.getBytes(UTF_8);
+        lock.readLock().lock();
+        try {
+            int offset = find(key, hash(key));
+            return offset == 0 ? null : readRecord(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String businessId) {
+        return get(businessId) != null;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 索引一个区块中有效的put/putBatch交易对本链码的存证写入，写入后刷盘，保证检查点不会超前于索引内容；
+     * 只收录调用参数中的businessId对应的写入，链码的其他状态不进入索引
+     */
+    void index(BlockEvent blockEvent) throws Exception {
+        boolean appended = false;
+        for (BlockInfo.EnvelopeInfo envelopeInfo : blockEvent.getEnvelopeInfos()) {
+            if (envelopeInfo.getType() != BlockInfo.EnvelopeType.TRANSACTION_ENVELOPE || !envelopeInfo.isValid()) {
+                continue;
+            }
+            BlockInfo.TransactionEnvelopeInfo transaction = (BlockInfo.TransactionEnvelopeInfo) envelopeInfo;
+            for (BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo action : transaction.getTransactionActionInfos()) {
+                TxReadWriteSetInfo rwsetInfo = action.getTxReadWriteSet();
+                if (rwsetInfo == null) {
+                    continue;
+                }
+                Set<String> businessIds = anchoredBusinessIds(action);
+                if (businessIds.isEmpty()) {
+                    continue;
+                }
+                for (TxReadWriteSetInfo.NsRwsetInfo nsRwsetInfo : rwsetInfo.getNsRwsetInfos()) {
+                    if (!chaincodeName.equals(nsRwsetInfo.getNamespace())) {
+                        continue;
+                    }
+                    for (KvRwset.KVWrite write : nsRwsetInfo.getRwset().getWritesList()) {
+                        if (!write.getIsDelete() && businessIds.contains(write.getKey())) {
+                            appended |= put(write.getKey(), transaction.getTransactionID(), blockEvent.getBlockNumber(),
+                                    write.getValue().toStringUtf8());
+                        }
+                    }
+                }
+            }
+        }
+        if (appended) {
+            lock.writeLock().lock();
+            try {
+                buffer.force();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 从链码调用参数中取出存证的businessId，{"invoke", "put", businessId, hash}或{"invoke", "putBatch", 编码的存证}；
+     * 其他调用返回空集合
+     */
+    private static Set<String> anchoredBusinessIds(BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo action) {
+        int count = action.getChaincodeInputArgsCount();
+        int fn = count > 0 && INVOKE.equals(new String(action.getChaincodeInputArgs(0), UTF_8)) ? 1 : 0;
+        if (fn >= count) {
+            return Collections.emptySet();
+        }
+        String function = new String(action.getChaincodeInputArgs(fn), UTF_8);
+        if (PUT.equals(function) && count > fn + 1) {
+            return Collections.singleton(new String(action.getChaincodeInputArgs(fn + 1), UTF_8));
+        }
+        if (PUT_BATCH.equals(function) && count > fn + 1) {
+            Set<String> businessIds = new HashSet<>();
+            try {
+                for (CreateTransPayload payload : BatchCodec.decode(action.getChaincodeInputArgs(fn + 1))) {
+                    businessIds.add(payload.getBusinessId());
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Skipping putBatch transaction with malformed arguments", e);
+                return Collections.emptySet();
+            }
+            return businessIds;
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * 追加一条记录；重放区块时记录已存在则跳过
+     *
+     * @return 是否写入了新记录
+     */
+    boolean put(String businessId, String txID, long blockNumber, String hash) throws IOException {
+        byte[] key = businessId.getBytes(UTF_8);
+        byte[] tx = txID.getBytes(UTF_8);
+        byte[] value = hash.getBytes(UTF_8);
+        int keyHash = hash(key);
+
+        lock.writeLock().lock();
+        try {
+            int existing = find(key, keyHash);
+            if (existing != 0 && Arrays.equals(tx, readBytes(existing + 4 + key.length))) {
+                return false;
+            }
+            int recordSize = 4 + key.length + 4 + tx.length + 8 + 4 + value.length + 4;
+            ensureCapacity(recordSize);
+            int offset = position;
+            int p = offset;
+            p = writeBytes(p, key);
+            p = writeBytes(p, tx);
+            buffer.putLong(p, blockNumber);
+            p = writeBytes(p + 8, value);
+            buffer.putInt(p, crc(offset, p));
+            position = p + 4;
+            buffer.putLong(POSITION_OFFSET, position);
+
+            if (existing != 0) {
+                replace(existing, offset, keyHash);
+            } else {
+                insert(offset, keyHash);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureCapacity(int recordSize) throws IOException {
+        long required = (long) position + recordSize;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("anchor index file is full: " + file);
+        }
+        long newSize = Math.min(Integer.MAX_VALUE, Math.max(required, (long) buffer.capacity() * 2));
+        buffer.force();
+        buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+    }
+
+    private int find(byte[] key, int keyHash) {
+        int mask = offsets.length - 1;
+        for (int slot = keyHash & mask; offsets[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == keyHash && keyEquals(offsets[slot], key)) {
+                return offsets[slot];
+            }
+        }
+        return 0;
+    }
+
+    private void insert(int offset, int keyHash) {
+        if ((size + 1) * 2 > offsets.length) {
+            rehash(offsets.length * 2);
+        }
+        int mask = offsets.length - 1;
+        int slot = keyHash & mask;
+        while (offsets[slot] != 0) {
+            if (hashes[slot] == keyHash && keyEquals(offsets[slot], readKey(offset))) {
+                // 重建时后写入的记录覆盖之前的记录
+                offsets[slot] = offset;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        offsets[slot] = offset;
+        hashes[slot] = keyHash;
+        size++;
+    }
+
+    private void replace(int oldOffset, int newOffset, int keyHash) {
+        int mask = offsets.length - 1;
+        for (int slot = keyHash & mask; offsets[slot] != 0; slot = (slot + 1) & mask) {
+            if (offsets[slot] == oldOffset) {
+                offsets[slot] = newOffset;
+                return;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldOffsets = offsets;
+        int[] oldHashes = hashes;
+        offsets = new int[capacity];
+        hashes = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldOffsets.length; i++) {
+            if (oldOffsets[i] != 0) {
+                int slot = oldHashes[i] & mask;
+                while (offsets[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                offsets[slot] = oldOffsets[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private static int hash(byte[] key) {
+        int h = Arrays.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private boolean keyEquals(int offset, byte[] key) {
+        if (buffer.getInt(offset) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(offset + 4 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] readKey(int offset) {
+        return readBytes(offset);
+    }
+
+    private byte[] readBytes(int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + 4 + i);
+        }
+        return bytes;
+    }
+
+    private int writeBytes(int offset, byte[] bytes) {
+        buffer.putInt(offset, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(offset + 4 + i, bytes[i]);
+        }
+        return offset + 4 + bytes.length;
+    }
+
+    private AnchorRecord readRecord(int offset) {
+        byte[] key = readBytes(offset);
+        int p = offset + 4 + key.length;
+        byte[] tx = readBytes(p);
+        p += 4 + tx.length;
+        long blockNumber = buffer.getLong(p);
+        byte[] value = readBytes(p + 8);
+        return new AnchorRecord(new String(key, UTF_8), new String(tx, UTF_8), blockNumber, new String(value, UTF_8));
+    }
+
+    /**
+     * 最后索引完成的区块号，未跟随区块或尚未索引区块时为-1
+     */
+    public synchronized long getLastIndexedBlock() {
+        return blockStream == null ? -1 : blockStream.getLastProcessedBlock();
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
+        if (blockStream != null) {
+            blockStream.close();
+            blockStream = null;
+        }
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+            fileChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.zbl.chain.sdk.index;
+
+/**
+ * 本地索引中一条存证记录
+ */
+public class AnchorRecord {
+
+    private final String businessId;
+    private final String txID;
+    private final long blockNumber;
+    private final String hash;
+
+    public AnchorRecord(String businessId, String txID, long blockNumber, String hash) {
+        this.businessId = businessId;
+        this.txID = txID;
+        this.blockNumber = blockNumber;
+        this.hash = hash;
+    }
+
+    public String getBusinessId() {
+        return businessId;
+    }
+
+    public String getTxID() {
+        return txID;
+    }
+
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+}
@@ -0,0 +1,166 @@
+package com.zbl.chain.sdk.limit;
+
+import com.zbl.chain.sdk.exceptions.OverloadException;
+import com.zbl.chain.sdk.utils.FabricUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.hyperledger.fabric.sdk.exception.TransactionException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 按观测延迟自适应调整的并发上限（梯度算法）
+ * 延迟基线取最小延迟，每PROBE_WINDOW个样本用该窗口内的最小延迟重设基线，以跟随网络本身变慢或变快；
+ * 每个样本计算 gradient = clamp(基线 * tolerance / 本次延迟, 0.5, 1)，
+ * 新上限 = 上限 * gradient + sqrt(上限)：延迟高于基线时上限下降，恢复后按sqrt(上限)逐步回升；
+ * 超时、过载及传输错误视为丢弃，上限乘性下降；链码返回错误等业务失败不影响上限。
+ * 并发数达到上限时直接抛出OverloadException，不排队
+ */
+public class AdaptiveLimiter {
+    private static final Log logger = LogFactory.getLog(AdaptiveLimiter.class);
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int PROBE_WINDOW = 1000;
+    /**
+     * 表示节点过载或不可达的gRPC状态
+     */
+    private static final String[] OVERLOAD_STATUSES = {"UNAVAILABLE", "RESOURCE_EXHAUSTED", "DEADLINE_EXCEEDED"};
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private long baselineRtt = Long.MAX_VALUE;
+    private long windowMinRtt = Long.MAX_VALUE;
+    private int windowSamples;
+    private int inFlight;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= minLimit <= maxLimit");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * 在上限内执行异步调用，按调用耗时调整上限
+     *
+     * @return 并发数已达上限时返回以OverloadException结束的future
+     */
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> supplier) {
+        if (!tryAcquire()) {
+            return FabricUtils.failedFuture(new OverloadException(name, getLimit()));
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = supplier.get();
+        } catch (RuntimeException e) {
+            release();
+            return FabricUtils.failedFuture(e);
+        }
+        return future.whenComplete((r, e) -> {
+            if (e == null) {
+                onSuccess(System.nanoTime() - start);
+            } else if (isDropped(e)) {
+                onDropped();
+            } else {
+                release();
+            }
+        });
+    }
+
+    /**
+     * 超时、下游过载、sdk的提议/提交异常（由gRPC传输错误引起）及过载类gRPC状态视为丢弃
+     */
+    static boolean isDropped(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof TimeoutException || t instanceof OverloadException
+                    || t instanceof ProposalException || t instanceof TransactionException) {
+                return true;
+            }
+            String type = t.getClass().getName();
+            if ("io.grpc.StatusRuntimeException".equals(type) || "io.grpc.StatusException".equals(type)) {
+                String message = String.valueOf(t.getMessage());
+                for (String status : OVERLOAD_STATUSES) {
+                    if (message.startsWith(status)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 占用一个并发名额，达到上限时返回false；占用后必须调用onSuccess、onDropped或release之一
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * 释放名额，不计入延迟样本
+     */
+    public synchronized void release() {
+        inFlight--;
+    }
+
+    public synchronized void onSuccess(long rttNanos) {
+        inFlight--;
+        baselineRtt = Math.min(baselineRtt, rttNanos);
+        windowMinRtt = Math.min(windowMinRtt, rttNanos);
+        if (++windowSamples >= PROBE_WINDOW) {
+            baselineRtt = windowMinRtt;
+            windowMinRtt = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baselineRtt / Math.max(1L, rttNanos)));
+        double target = limit * gradient + Math.sqrt(limit);
+        // 并发远低于上限时无法说明还有余量，不提高上限
+        if (target > limit && inFlight + 1 < limit / 2) {
+            return;
+        }
+        update(limit * (1 - SMOOTHING) + target * SMOOTHING);
+    }
+
+    public synchronized void onDropped() {
+        inFlight--;
+        update(limit * BACKOFF_RATIO);
+    }
+
+    private void update(double newLimit) {
+        double old = limit;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        if (logger.isDebugEnabled() && (int) old != (int) limit) {
+            logger.debug(String.format("%s limit %d -> %d", name, (int) old, (int) limit));
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s[limit=%d, inFlight=%d, baselineRtt=%.1fms]", name, (int) limit, inFlight,
+                baselineRtt == Long.MAX_VALUE ? 0 : baselineRtt / 1e6);
+    }
+}
@@ -0,0 +1,32 @@
+package com.zbl.chain.sdk.limit;
+
+/**
+ * 额外请求配额：每个请求积累percent/100个令牌，每次额外请求（对冲、重试）消耗一个，保证额外请求不超过流量的percent%
+ */
+public class TokenBudget {
+
+    private final double tokensPerRequest;
+    private final double maxTokens;
+    private double tokens;
+
+    /**
+     * @param percent   额外请求占请求总数的最大百分比
+     * @param maxTokens 最多积累的令牌数，限制突发的额外请求
+     */
+    public TokenBudget(double percent, double maxTokens) {
+        this.tokensPerRequest = percent / 100;
+        this.maxTokens = maxTokens;
+    }
+
+    public synchronized void onRequest() {
+        tokens = Math.min(maxTokens, tokens + tokensPerRequest);
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
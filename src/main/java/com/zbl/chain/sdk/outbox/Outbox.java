@@ -0,0 +1,105 @@
+package com.zbl.chain.sdk.outbox;
+
+import com.zbl.chain.sdk.ZblClient;
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import com.zbl.chain.sdk.pojos.response.CreateTransResponse;
+import com.zbl.chain.sdk.utils.FabricUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 持久化发件箱
+ * 存证先写入本地日志并刷盘，再发送交易，落块后标记完成；进程退出后未完成的存证可通过replayPending重新发送。
+ * 重放可能重复发送进程退出前已落块但未标记完成的存证，即至少一次语义
+ */
+public class Outbox implements AutoCloseable {
+    private static final Log logger = LogFactory.getLog(Outbox.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final ZblClient client;
+    private final OutboxJournal journal;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    public Outbox(ZblClient client, Path directory) throws IOException {
+        this(client, directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public Outbox(ZblClient client, Path directory, int segmentSize) throws IOException {
+        this.client = client;
+        this.journal = new OutboxJournal(directory, segmentSize);
+    }
+
+    /**
+     * 写入日志并在刷盘后发送交易
+     *
+     * @return 交易落块后完成；发送失败时存证保留在日志中，可通过replayPending重新发送
+     */
+    public CompletableFuture<CreateTransResponse> submit(CreateTransPayload payload) {
+        OutboxJournal.Entry entry;
+        try {
+            entry = journal.enqueue(payload);
+        } catch (IOException | RuntimeException e) {
+            return FabricUtils.failedFuture(e);
+        }
+        inFlight.add(entry.getId());
+        return send(entry);
+    }
+
+    /**
+     * 重新发送日志中所有未完成且不在发送中的存证，并发调用时每条存证只发送一次；发送失败记录日志
+     */
+    public List<CompletableFuture<CreateTransResponse>> replayPending() {
+        List<CompletableFuture<CreateTransResponse>> futures = new ArrayList<>();
+        for (OutboxJournal.Entry entry : journal.getPending()) {
+            if (inFlight.add(entry.getId())) {
+                long id = entry.getId();
+                futures.add(send(entry).whenComplete((response, e) -> {
+                    if (e != null) {
+                        logger.warn("Failed to replay outbox entry " + id, e);
+                    }
+                }));
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * 调用前需已将存证加入inFlight
+     */
+    private CompletableFuture<CreateTransResponse> send(OutboxJournal.Entry entry) {
+        long id = entry.getId();
+        return entry.getDurable()
+                .thenCompose(v -> client.sendTransactionAsync(entry.getPayload()))
+                .whenComplete((response, e) -> {
+                    inFlight.remove(id);
+                    if (e == null) {
+                        try {
+                            journal.markDone(id);
+                        } catch (IOException ex) {
+                            logger.warn("Failed to mark outbox entry " + id + " done", ex);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * 日志中未完成的存证数，包括发送中的
+     */
+    public int getPendingCount() {
+        return journal.getPendingCount();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        journal.close();
+    }
+}
@@ -0,0 +1,338 @@
+package com.zbl.chain.sdk.outbox;
+
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import com.zbl.chain.sdk.utils.BatchCodec;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * 发件箱日志：追加写入的内存映射分段文件
+ * 记录格式：int 长度 | int crc32 | byte 类型 | long id | 数据，长度为0表示段内记录结束。
+ * ENQUEUE记录保存待发送的存证，DONE记录标记已完成。
+ * 刷盘采用组提交：后台线程每次force一批追加，期间到达的追加合并到下一批，一次fsync确认多条记录。
+ * 打开时按顺序扫描所有段，crc不符的记录视为写入中断，其后内容丢弃；之后总是写入新段。
+ * 段内ENQUEUE全部完成后按顺序删除最旧的段，保证被删除段中的DONE只指向同样已删除的段
+ */
+class OutboxJournal implements AutoCloseable {
+    private static final Log logger = LogFactory.getLog(OutboxJournal.class);
+
+    private static final byte ENQUEUE = 1;
+    private static final byte DONE = 2;
+    private static final int RECORD_HEADER = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    static class Entry {
+        private final long id;
+        private final long segment;
+        private final CreateTransPayload payload;
+        private final CompletableFuture<Void> durable;
+
+        Entry(long id, long segment, CreateTransPayload payload, CompletableFuture<Void> durable) {
+            this.id = id;
+            this.segment = segment;
+            this.payload = payload;
+            this.durable = durable;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        CreateTransPayload getPayload() {
+            return payload;
+        }
+
+        /**
+         * 记录刷盘后完成
+         */
+        CompletableFuture<Void> getDurable() {
+            return durable;
+        }
+    }
+
+    private static class Segment {
+        private final long seq;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int outstanding;
+
+        Segment(long seq, Path path, MappedByteBuffer buffer) {
+            this.seq = seq;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Map<Long, Entry> pending = new LinkedHashMap<>();
+    private final Thread flusher;
+
+    private Segment current;
+    private long nextId;
+    private List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    private Set<Segment> dirty = new LinkedHashSet<>();
+    private boolean closed;
+
+    OutboxJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        replay();
+        roll();
+        prune();
+        flusher = new Thread(this::flushLoop, "zbl-outbox-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    private void replay() throws IOException {
+        List<Long> seqs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                seqs.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(seqs);
+        for (long seq : seqs) {
+            Segment segment = map(seq, false);
+            segments.put(seq, segment);
+            scan(segment);
+        }
+        if (!pending.isEmpty()) {
+            logger.info(String.format("Outbox %s has %d unfinished entries", directory, pending.size()));
+        }
+    }
+
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        CRC32 crc = new CRC32();
+        while (buffer.capacity() - segment.position >= RECORD_HEADER) {
+            int length = buffer.getInt(segment.position);
+            if (length <= 0 || length > buffer.capacity() - segment.position - RECORD_HEADER) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.position(segment.position + RECORD_HEADER);
+            buffer.get(body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(segment.position + 4)) {
+                logger.warn(String.format("Outbox segment %s is truncated at %d", segment.path, segment.position));
+                break;
+            }
+            segment.position += RECORD_HEADER + length;
+
+            ByteBuffer record = ByteBuffer.wrap(body);
+            byte type = record.get();
+            long id = record.getLong();
+            nextId = Math.max(nextId, id + 1);
+            if (type == ENQUEUE) {
+                byte[] data = new byte[record.remaining()];
+                record.get(data);
+                CreateTransPayload payload = BatchCodec.decode(data).get(0);
+                pending.put(id, new Entry(id, segment.seq, payload, CompletableFuture.completedFuture(null)));
+                segment.outstanding++;
+            } else if (type == DONE) {
+                complete(id);
+            }
+        }
+    }
+
+    private Segment map(long seq, boolean create) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", seq, SEGMENT_SUFFIX));
+        try (FileChannel channel = create
+                ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = create ? segmentSize : channel.size();
+            return new Segment(seq, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private void roll() throws IOException {
+        if (current != null) {
+            dirty.add(current);
+        }
+        long seq = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        current = map(seq, true);
+        segments.put(seq, current);
+        syncDirectory();
+    }
+
+    /**
+     * 刷新目录项，保证新建或删除的段文件在掉电后仍然可见；不支持目录fsync的平台忽略
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Directory fsync not supported for " + directory, e);
+        }
+    }
+
+    /**
+     * 写入一条待发送记录
+     */
+    synchronized Entry enqueue(CreateTransPayload payload) throws IOException {
+        if (closed) {
+            throw new IOException("outbox journal is closed");
+        }
+        long id = nextId++;
+        append(ENQUEUE, id, BatchCodec.encode(Collections.singletonList(payload)));
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        Entry entry = new Entry(id, current.seq, payload, durable);
+        pending.put(id, entry);
+        current.outstanding++;
+        waiters.add(durable);
+        notifyAll();
+        return entry;
+    }
+
+    /**
+     * 标记记录已完成，不等待刷盘：进程在刷盘前退出时该记录会被重放
+     */
+    synchronized void markDone(long id) throws IOException {
+        if (closed || !pending.containsKey(id)) {
+            return;
+        }
+        append(DONE, id, new byte[0]);
+        complete(id);
+        prune();
+        notifyAll();
+    }
+
+    private void complete(long id) {
+        Entry entry = pending.remove(id);
+        if (entry != null) {
+            Segment segment = segments.get(entry.segment);
+            if (segment != null) {
+                segment.outstanding--;
+            }
+        }
+    }
+
+    synchronized List<Entry> getPending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private void append(byte type, long id, byte[] data) throws IOException {
+        int length = 1 + 8 + data.length;
+        if (RECORD_HEADER + length > segmentSize) {
+            throw new IOException(String.format("outbox record of %d bytes exceeds segment size %d", length, segmentSize));
+        }
+        if (current.position + RECORD_HEADER + length > segmentSize) {
+            roll();
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        body.put(type).putLong(id).put(data);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+
+        ByteBuffer buffer = current.buffer.duplicate();
+        buffer.position(current.position);
+        buffer.putInt(length).putInt((int) crc.getValue()).put(body.array());
+        current.position = buffer.position();
+        dirty.add(current);
+    }
+
+    /**
+     * 删除最旧的、记录已全部完成的段
+     */
+    private void prune() {
+        boolean removed = false;
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == current || oldest.outstanding > 0) {
+                break;
+            }
+            segments.pollFirstEntry();
+            dirty.remove(oldest);
+            try {
+                removed |= Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                logger.warn("Failed to delete outbox segment " + oldest.path, e);
+            }
+        }
+        if (removed) {
+            syncDirectory();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<CompletableFuture<Void>> batch;
+            Set<Segment> toForce;
+            synchronized (this) {
+                while (waiters.isEmpty() && dirty.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (waiters.isEmpty() && dirty.isEmpty()) {
+                    return;
+                }
+                batch = waiters;
+                toForce = dirty;
+                waiters = new ArrayList<>();
+                dirty = new LinkedHashSet<>();
+            }
+            try {
+                for (Segment segment : toForce) {
+                    segment.buffer.force();
+                }
+                for (CompletableFuture<Void> waiter : batch) {
+                    waiter.complete(null);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to flush outbox journal", e);
+                for (CompletableFuture<Void> waiter : batch) {
+                    waiter.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 刷盘已写入的记录后关闭
+     */
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        flusher.join();
+    }
+}
@@ -0,0 +1,51 @@
+package com.zbl.chain.sdk.pojos.response;
+
+
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+
+public class BulkSubmitResult {
+
+  /**
+   * position of the payload in the submitted sequence
+   */
+  private long index;
+
+  private CreateTransPayload payload;
+
+  /**
+   * null when the transaction failed
+   */
+  private CreateTransResponse response;
+
+  /**
+   * null when the transaction succeeded
+   */
+  private Throwable error;
+
+  public BulkSubmitResult(long index, CreateTransPayload payload, CreateTransResponse response, Throwable error) {
+    this.index = index;
+    this.payload = payload;
+    this.response = response;
+    this.error = error;
+  }
+
+  public long getIndex() {
+    return index;
+  }
+
+  public CreateTransPayload getPayload() {
+    return payload;
+  }
+
+  public CreateTransResponse getResponse() {
+    return response;
+  }
+
+  public Throwable getError() {
+    return error;
+  }
+
+  public boolean isSuccess() {
+    return null == error;
+  }
+}
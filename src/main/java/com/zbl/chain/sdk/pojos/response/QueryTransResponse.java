@@ -0,0 +1,37 @@
+package com.zbl.chain.sdk.pojos.response;
+
+
+import com.zbl.chain.sdk.pojos.response.data.QueryTransData;
+
+public class QueryTransResponse extends BaseResponse {
+
+  /**
+   * null when the lookup failed
+   */
+  private QueryTransData data;
+
+  /**
+   * null when the lookup succeeded
+   */
+  private Throwable error;
+
+  public QueryTransData getData() {
+    return data;
+  }
+
+  public void setData(QueryTransData data) {
+    this.data = data;
+  }
+
+  public Throwable getError() {
+    return error;
+  }
+
+  public void setError(Throwable error) {
+    this.error = error;
+  }
+
+  public boolean isSuccess() {
+    return null == error;
+  }
+}
@@ -0,0 +1,69 @@
+package com.zbl.chain.sdk.pojos.response.data;
+
+
+import java.util.List;
+
+public class MerkleProof {
+
+  /**
+   * transaction ID of the transaction anchoring the root
+   */
+  private String txID;
+
+  /**
+   * merkle root, hex encoded
+   */
+  private String root;
+
+  private int leafIndex;
+
+  /**
+   * sibling hashes from leaf to root, hex encoded
+   */
+  private List<String> siblings;
+
+  /**
+   * whether the sibling at the same position is the left child
+   */
+  private List<Boolean> leftSiblings;
+
+  public String getTxID(){
+    return txID;
+  }
+
+  public void setTxID(String txID){
+    this.txID = txID;
+  }
+
+  public String getRoot(){
+    return root;
+  }
+
+  public void setRoot(String root){
+    this.root = root;
+  }
+
+  public int getLeafIndex(){
+    return leafIndex;
+  }
+
+  public void setLeafIndex(int leafIndex){
+    this.leafIndex = leafIndex;
+  }
+
+  public List<String> getSiblings(){
+    return siblings;
+  }
+
+  public void setSiblings(List<String> siblings){
+    this.siblings = siblings;
+  }
+
+  public List<Boolean> getLeftSiblings(){
+    return leftSiblings;
+  }
+
+  public void setLeftSiblings(List<Boolean> leftSiblings){
+    this.leftSiblings = leftSiblings;
+  }
+}
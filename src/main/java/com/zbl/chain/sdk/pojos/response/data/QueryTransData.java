@@ -0,0 +1,83 @@
+package com.zbl.chain.sdk.pojos.response.data;
+
+
+import java.util.Date;
+
+public class QueryTransData {
+
+  /**
+   * transaction ID
+   */
+  private String txID;
+
+  /**
+   * number of the block containing the transaction
+   */
+  private long blockNumber;
+
+  /**
+   * validation code assigned by the committing peers, 0 when valid
+   */
+  private int validationCode;
+
+  private boolean valid;
+
+  /**
+   * timestamp set by the client that created the transaction
+   */
+  private Date timestamp;
+
+  public QueryTransData(){
+  }
+
+  /**
+   * 复制构造，缓存中的对象不直接交给调用方
+   */
+  public QueryTransData(QueryTransData other){
+    this.txID = other.txID;
+    this.blockNumber = other.blockNumber;
+    this.validationCode = other.validationCode;
+    this.valid = other.valid;
+    this.timestamp = null == other.timestamp ? null : new Date(other.timestamp.getTime());
+  }
+
+  public String getTxID(){
+    return txID;
+  }
+
+  public void setTxID(String txID){
+    this.txID = txID;
+  }
+
+  public long getBlockNumber(){
+    return blockNumber;
+  }
+
+  public void setBlockNumber(long blockNumber){
+    this.blockNumber = blockNumber;
+  }
+
+  public int getValidationCode(){
+    return validationCode;
+  }
+
+  public void setValidationCode(int validationCode){
+    this.validationCode = validationCode;
+  }
+
+  public boolean isValid(){
+    return valid;
+  }
+
+  public void setValid(boolean valid){
+    this.valid = valid;
+  }
+
+  public Date getTimestamp(){
+    return timestamp;
+  }
+
+  public void setTimestamp(Date timestamp){
+    this.timestamp = timestamp;
+  }
+}
@@ -0,0 +1,69 @@
+package com.zbl.chain.sdk.utils;
+
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * putBatch参数编码
+ * 格式（大端）：uint32 条数，之后每条为 uint16 businessId长度 + businessId(UTF-8) + uint16 hash长度 + hash(UTF-8)
+ */
+public class BatchCodec {
+
+    private static final int MAX_FIELD_LENGTH = 0xFFFF;
+
+    public static byte[] encode(List<CreateTransPayload> payloads) {
+        List<byte[]> fields = new ArrayList<>(payloads.size() * 2);
+        int size = 4;
+        for (CreateTransPayload payload : payloads) {
+            byte[] businessId = field("businessId", payload.getBusinessId());
+            byte[] hash = field("hash", payload.getHash());
+            fields.add(businessId);
+            fields.add(hash);
+            size += 4 + businessId.length + hash.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(payloads.size());
+        for (byte[] field : fields) {
+            buffer.putShort((short) field.length);
+            buffer.put(field);
+        }
+        return buffer.array();
+    }
+
+    public static List<CreateTransPayload> decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int count = buffer.getInt();
+        List<CreateTransPayload> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CreateTransPayload payload = new CreateTransPayload();
+            payload.setBusinessId(readField(buffer));
+            payload.setHash(readField(buffer));
+            payloads.add(payload);
+        }
+        return payloads;
+    }
+
+    private static byte[] field(String name, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException(format("%s must not be null", name));
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        if (bytes.length > MAX_FIELD_LENGTH) {
+            throw new IllegalArgumentException(format("%s is longer than %d bytes", name, MAX_FIELD_LENGTH));
+        }
+        return bytes;
+    }
+
+    private static String readField(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -1,7 +1,10 @@
 package com.zbl.chain.sdk.utils;
 
+import com.google.protobuf.ByteString;
 import com.zbl.chain.sdk.FabricConfig;
 import com.zbl.chain.sdk.FabricOrg;
+import com.zbl.chain.sdk.endorsement.LatencyAwareEndorsementSelector;
+import com.zbl.chain.sdk.endorsement.PeerStats;
 import org.hyperledger.fabric.sdk.*;
 import org.hyperledger.fabric.sdk.TransactionRequest.Type;
 import org.hyperledger.fabric.sdk.exception.*;
@@ -10,7 +13,10 @@ import org.hyperledger.fabric.sdk.security.CryptoSuite;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeoutException;
 
 import static java.lang.String.format;
@@ -18,6 +24,36 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hyperledger.fabric.sdk.Channel.PeerOptions.createPeerOptions;
 
 public class FabricUtils {
+
+    private static volatile ServiceDiscovery.EndorsementSelector endorsementSelector = LatencyAwareEndorsementSelector.getInstance();
+
+    /**
+     * 设置背书节点选择策略，默认按节点延迟选择
+     */
+    public static void setEndorsementSelector(ServiceDiscovery.EndorsementSelector selector) {
+        endorsementSelector = selector;
+    }
+
+    public static ServiceDiscovery.EndorsementSelector getEndorsementSelector() {
+        return endorsementSelector;
+    }
+
+    /**
+     * 新建HFClient使用的CryptoSuite，为null时使用sdk默认实现
+     */
+    private static volatile CryptoSuite cryptoSuite;
+
+    /**
+     * 设置之后新建的HFClient使用的CryptoSuite，例如FastCryptoSuite
+     */
+    public static void setCryptoSuite(CryptoSuite suite) {
+        cryptoSuite = suite;
+    }
+
+    public static CryptoSuite getCryptoSuite() {
+        return cryptoSuite;
+    }
+
     /**
      * 获取客户端实例
      */
@@ -25,7 +61,8 @@ public class FabricUtils {
         // Fabric客户端实例
         HFClient client = HFClient.createNewInstance();
         try {
-            client.setCryptoSuite(CryptoSuite.Factory.getCryptoSuite());
+            CryptoSuite suite = cryptoSuite;
+            client.setCryptoSuite(null == suite ? CryptoSuite.Factory.getCryptoSuite() : suite);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -168,6 +205,59 @@ public class FabricUtils {
         return newChannel.initialize();
     }
 
+    /**
+     * 并行预热已初始化的channel：与每个peer、orderer各完成一次往返以建立连接和TLS会话，然后读取一次服务发现结果
+     *
+     * @param user     访问orderer使用的用户
+     * @param executor 执行预热请求的线程池
+     * @return 服务发现得到的链码名称
+     */
+    public static CompletableFuture<Collection<String>> warmUpChannel(Channel channel, User user, Executor executor) {
+        List<CompletableFuture<?>> connects = new ArrayList<>();
+        for (Peer peer : channel.getPeers()) {
+            connects.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return channel.queryBlockchainInfo(peer, user);
+                } catch (ProposalException | InvalidArgumentException e) {
+                    throw new CompletionException(format("Failed to warm up peer %s", peer.getName()), e);
+                }
+            }, executor));
+        }
+        for (Orderer orderer : channel.getOrderers()) {
+            connects.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return channel.getChannelConfigurationBytes(user, orderer);
+                } catch (TransactionException | InvalidArgumentException e) {
+                    throw new CompletionException(format("Failed to warm up orderer %s", orderer.getName()), e);
+                }
+            }, executor));
+        }
+        return CompletableFuture.allOf(connects.toArray(new CompletableFuture<?>[0]))
+                .thenApplyAsync(v -> channel.getDiscoveredChaincodeNames(), executor);
+    }
+
+    /**
+     * 获取一个只用于接收区块事件的channel
+     * peers只承担EVENT_SOURCE角色，从startBlock开始推送区块
+     *
+     * @param filtered 是否只接收过滤后的区块（只含交易ID及验证结果）
+     */
+    public static Channel getEventChannel(String name, FabricOrg org, HFClient client, FabricConfig config,
+                                          long startBlock, boolean filtered)
+            throws InvalidArgumentException, TransactionException {
+        Channel newChannel = getChannel(name, client);
+        for (Peer peer : getPeers(org, client, config)) {
+            Channel.PeerOptions peerOptions = createPeerOptions().setPeerRoles(EnumSet.of(Peer.PeerRole.EVENT_SOURCE))
+                    .startEvents(startBlock);
+            if (filtered) {
+                peerOptions.registerEventsForFilteredBlocks();
+            }
+            newChannel.addPeer(peer, peerOptions);
+        }
+        addOrderers(newChannel, getOrderers(org, client, config));
+        return newChannel.initialize();
+    }
+
     public static Channel getExistingChannelAndJoinPeers(String name, FabricOrg org, HFClient client,
                                                          FabricConfig config)
             throws InvalidArgumentException, ProposalException, TransactionException {
@@ -298,22 +388,28 @@ public class FabricUtils {
     public static Collection<ProposalResponse> sendProposalToPeers(Channel channel, HFClient client,
                                                                    String chaincodeName, String fcn, String[] args, long proposalWaitTime)
             throws InvalidArgumentException, ProposalException {
-        TransactionProposalRequest transactionProposalRequest = client.newTransactionProposalRequest();
-        transactionProposalRequest.setFcn(fcn);
-        transactionProposalRequest.setArgs(args);
-        transactionProposalRequest.setChaincodeName(chaincodeName);
-        transactionProposalRequest.setChaincodeLanguage(Type.GO_LANG);
-        transactionProposalRequest.setProposalWaitTime(proposalWaitTime);
-        transactionProposalRequest.setUserContext(client.getUserContext());
-        transactionProposalRequest.setInit(false);
-        Channel.DiscoveryOptions discoveryOptions = Channel.DiscoveryOptions.createDiscoveryOptions();
-        discoveryOptions.setEndorsementSelector(ServiceDiscovery.EndorsementSelector.ENDORSEMENT_SELECTION_RANDOM);
-        discoveryOptions.setForceDiscovery(false);
-        discoveryOptions.setInspectResults(true);
+        TransactionProposalRequest transactionProposalRequest = newTransactionProposalRequest(client, chaincodeName, fcn, args, proposalWaitTime);
+        return sendProposalToPeers(channel, transactionProposalRequest);
+    }
+
+    /**
+     * 发起提议到背书节点，参数为二进制
+     *
+     * @param args 包含要执行的方法名及参数，{methodName, parameters...}
+     */
+    public static Collection<ProposalResponse> sendProposalToPeers(Channel channel, HFClient client,
+                                                                   String chaincodeName, String fcn, byte[][] args, long proposalWaitTime)
+            throws InvalidArgumentException, ProposalException {
+        TransactionProposalRequest transactionProposalRequest = newTransactionProposalRequest(client, chaincodeName, fcn, args, proposalWaitTime);
+        return sendProposalToPeers(channel, transactionProposalRequest);
+    }
+
+    private static Collection<ProposalResponse> sendProposalToPeers(Channel channel, TransactionProposalRequest transactionProposalRequest)
+            throws InvalidArgumentException {
+        Channel.DiscoveryOptions discoveryOptions = newDiscoveryOptions();
         Collection<ProposalResponse> transactionPropResp = null;
         try {
-            transactionPropResp = channel.sendTransactionProposalToEndorsers
-                    (transactionProposalRequest, discoveryOptions);
+            transactionPropResp = sendTransactionProposalToEndorsers(channel, transactionProposalRequest, discoveryOptions);
         } catch (ProposalException e) {
             System.out.printf("invokeTransactionSync fail,ProposalException:{}", e.getLocalizedMessage());
             e.printStackTrace();
@@ -327,39 +423,265 @@ public class FabricUtils {
         return transactionPropResp;
     }
 
+    /**
+     * 异步发起提议到背书节点
+     * fabric-sdk-java 只提供阻塞的背书接口，背书在executor上执行，调用线程不等待；异常通过future返回
+     *
+     * @param executor 执行背书请求的线程池
+     */
+    public static CompletableFuture<Collection<ProposalResponse>> sendProposalToPeersAsync(Channel channel, HFClient client,
+                                                                                          String chaincodeName, String fcn, String[] args, long proposalWaitTime,
+                                                                                          Executor executor) {
+        TransactionProposalRequest transactionProposalRequest = newTransactionProposalRequest(client, chaincodeName, fcn, args, proposalWaitTime);
+        return sendProposalToPeersAsync(channel, transactionProposalRequest, executor);
+    }
+
+    /**
+     * 异步发起提议到背书节点，参数为二进制
+     */
+    public static CompletableFuture<Collection<ProposalResponse>> sendProposalToPeersAsync(Channel channel, HFClient client,
+                                                                                          String chaincodeName, String fcn, byte[][] args, long proposalWaitTime,
+                                                                                          Executor executor) {
+        TransactionProposalRequest transactionProposalRequest = newTransactionProposalRequest(client, chaincodeName, fcn, args, proposalWaitTime);
+        return sendProposalToPeersAsync(channel, transactionProposalRequest, executor);
+    }
+
+    /**
+     * 异步通过服务发现背书已构建好的提议
+     */
+    public static CompletableFuture<Collection<ProposalResponse>> sendProposalToPeersAsync(Channel channel,
+                                                                                           TransactionProposalRequest transactionProposalRequest,
+                                                                                           Executor executor) {
+        final Channel.DiscoveryOptions discoveryOptions;
+        try {
+            discoveryOptions = newDiscoveryOptions();
+        } catch (InvalidArgumentException e) {
+            return failedFuture(e);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return sendTransactionProposalToEndorsers(channel, transactionProposalRequest, discoveryOptions);
+            } catch (ProposalException | ServiceDiscoveryException | InvalidArgumentException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * 通过服务发现背书，使用LatencyAwareEndorsementSelector时记录各节点的背书统计
+     */
+    private static Collection<ProposalResponse> sendTransactionProposalToEndorsers(Channel channel,
+                                                                                  TransactionProposalRequest transactionProposalRequest,
+                                                                                  Channel.DiscoveryOptions discoveryOptions)
+            throws ProposalException, InvalidArgumentException, ServiceDiscoveryException {
+        ServiceDiscovery.EndorsementSelector selector = endorsementSelector;
+        if (!(selector instanceof LatencyAwareEndorsementSelector)) {
+            return channel.sendTransactionProposalToEndorsers(transactionProposalRequest, discoveryOptions);
+        }
+        LatencyAwareEndorsementSelector latencyAwareSelector = (LatencyAwareEndorsementSelector) selector;
+        Collection<ProposalResponse> transactionPropResp = null;
+        latencyAwareSelector.beginProposal(channel.getName(), transactionProposalRequest.getChaincodeName());
+        try {
+            transactionPropResp = channel.sendTransactionProposalToEndorsers(transactionProposalRequest, discoveryOptions);
+            return transactionPropResp;
+        } finally {
+            latencyAwareSelector.endProposal(transactionPropResp);
+        }
+    }
+
+    /**
+     * 构建交易提议
+     *
+     * @param args 包含要执行的方法名及参数，{methodName, parameters...}
+     */
+    public static TransactionProposalRequest newTransactionProposalRequest(HFClient client, String chaincodeName,
+                                                                           String fcn, String[] args, long proposalWaitTime) {
+        TransactionProposalRequest transactionProposalRequest = newTransactionProposalRequest(client, chaincodeName, fcn, proposalWaitTime);
+        transactionProposalRequest.setArgs(args);
+        return transactionProposalRequest;
+    }
+
+    /**
+     * 构建交易提议，参数为二进制
+     */
+    public static TransactionProposalRequest newTransactionProposalRequest(HFClient client, String chaincodeName,
+                                                                           String fcn, byte[][] args, long proposalWaitTime) {
+        TransactionProposalRequest transactionProposalRequest = newTransactionProposalRequest(client, chaincodeName, fcn, proposalWaitTime);
+        transactionProposalRequest.setArgBytes(args);
+        return transactionProposalRequest;
+    }
+
+    private static TransactionProposalRequest newTransactionProposalRequest(HFClient client, String chaincodeName,
+                                                                            String fcn, long proposalWaitTime) {
+        TransactionProposalRequest transactionProposalRequest = client.newTransactionProposalRequest();
+        transactionProposalRequest.setFcn(fcn);
+        transactionProposalRequest.setChaincodeName(chaincodeName);
+        transactionProposalRequest.setChaincodeLanguage(Type.GO_LANG);
+        transactionProposalRequest.setProposalWaitTime(proposalWaitTime);
+        transactionProposalRequest.setUserContext(client.getUserContext());
+        transactionProposalRequest.setInit(false);
+        return transactionProposalRequest;
+    }
+
+    private static Channel.DiscoveryOptions newDiscoveryOptions() throws InvalidArgumentException {
+        Channel.DiscoveryOptions discoveryOptions = Channel.DiscoveryOptions.createDiscoveryOptions();
+        discoveryOptions.setEndorsementSelector(endorsementSelector);
+        discoveryOptions.setForceDiscovery(false);
+        discoveryOptions.setInspectResults(true);
+        return discoveryOptions;
+    }
+
+    /**
+     * 返回一个已异常结束的future（java 8 没有CompletableFuture.failedFuture）
+     */
+    public static <T> CompletableFuture<T> failedFuture(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
 
     public static Collection<ProposalResponse> sendQuery(Channel channel, HFClient client,
                                                          ChaincodeID chaincodeID, String fcn, String[] args, long proposalWaitTime)
             throws InvalidArgumentException, ProposalException {
-        QueryByChaincodeRequest queryByChaincodeRequest = client.newQueryProposalRequest();
-        queryByChaincodeRequest.setProposalWaitTime(proposalWaitTime);
+        QueryByChaincodeRequest queryByChaincodeRequest = newQueryRequest(client, fcn, proposalWaitTime);
         queryByChaincodeRequest.setChaincodeID(chaincodeID);
-        queryByChaincodeRequest.setFcn(fcn);
         queryByChaincodeRequest.setArgs(args);
 
-        Map<String, byte[]> tm2 = new HashMap<>(2);
-        tm2.put("HyperLedgerFabric", "QueryByChaincodeRequest:JavaSDK".getBytes(UTF_8));
-        tm2.put("method", "QueryByChaincodeRequest".getBytes(UTF_8));
-        queryByChaincodeRequest.setTransientMap(tm2);
-
         return channel.queryByChaincode(queryByChaincodeRequest, channel.getPeers());
     }
 
     public static Collection<ProposalResponse> sendQuery(Channel channel, HFClient client,
                                                          ChaincodeID chaincodeID, String fcn, byte[][] args, long proposalWaitTime)
             throws InvalidArgumentException, ProposalException {
+        QueryByChaincodeRequest queryByChaincodeRequest = newQueryRequest(client, fcn, proposalWaitTime);
+        queryByChaincodeRequest.setChaincodeID(chaincodeID);
+        queryByChaincodeRequest.setArgBytes(args);
+
+        return channel.queryByChaincode(queryByChaincodeRequest, channel.getPeers());
+    }
+
+    /**
+     * 只向一个节点查询：按预计延迟从低到高选择节点，出错、超时或返回失败时换下一个节点
+     */
+    public static ProposalResponse sendQueryToOnePeer(Channel channel, HFClient client,
+                                                      String chaincodeName, String fcn, String[] args, long proposalWaitTime)
+            throws InvalidArgumentException, ProposalException {
+        return sendQueryWithAgreement(channel, client, chaincodeName, fcn, args, proposalWaitTime, 1);
+    }
+
+    public static ProposalResponse sendQueryToOnePeer(Channel channel, HFClient client,
+                                                      String chaincodeName, String fcn, byte[][] args, long proposalWaitTime)
+            throws InvalidArgumentException, ProposalException {
+        return sendQueryWithAgreement(channel, client, chaincodeName, fcn, args, proposalWaitTime, 1);
+    }
+
+    /**
+     * 按预计延迟依次查询节点，直到agreement个节点返回相同结果，用于需要更强保证的读
+     * 每轮只并行查询还差的节点数，全部一致时只访问agreement个节点
+     */
+    public static ProposalResponse sendQueryWithAgreement(Channel channel, HFClient client,
+                                                          String chaincodeName, String fcn, String[] args, long proposalWaitTime,
+                                                          int agreement)
+            throws InvalidArgumentException, ProposalException {
+        QueryByChaincodeRequest queryByChaincodeRequest = newQueryRequest(client, fcn, proposalWaitTime);
+        queryByChaincodeRequest.setChaincodeName(chaincodeName);
+        queryByChaincodeRequest.setArgs(args);
+
+        return queryUntilAgreement(channel, queryByChaincodeRequest, agreement);
+    }
+
+    public static ProposalResponse sendQueryWithAgreement(Channel channel, HFClient client,
+                                                          String chaincodeName, String fcn, byte[][] args, long proposalWaitTime,
+                                                          int agreement)
+            throws InvalidArgumentException, ProposalException {
+        QueryByChaincodeRequest queryByChaincodeRequest = newQueryRequest(client, fcn, proposalWaitTime);
+        queryByChaincodeRequest.setChaincodeName(chaincodeName);
+        queryByChaincodeRequest.setArgBytes(args);
+
+        return queryUntilAgreement(channel, queryByChaincodeRequest, agreement);
+    }
+
+    private static QueryByChaincodeRequest newQueryRequest(HFClient client, String fcn, long proposalWaitTime)
+            throws InvalidArgumentException {
         QueryByChaincodeRequest queryByChaincodeRequest = client.newQueryProposalRequest();
         queryByChaincodeRequest.setProposalWaitTime(proposalWaitTime);
-        queryByChaincodeRequest.setChaincodeID(chaincodeID);
         queryByChaincodeRequest.setFcn(fcn);
-        queryByChaincodeRequest.setArgBytes(args);
 
         Map<String, byte[]> tm2 = new HashMap<>(2);
         tm2.put("HyperLedgerFabric", "QueryByChaincodeRequest:JavaSDK".getBytes(UTF_8));
         tm2.put("method", "QueryByChaincodeRequest".getBytes(UTF_8));
         queryByChaincodeRequest.setTransientMap(tm2);
+        return queryByChaincodeRequest;
+    }
 
-        return channel.queryByChaincode(queryByChaincodeRequest, channel.getPeers());
+    private static ProposalResponse queryUntilAgreement(Channel channel, QueryByChaincodeRequest request, int agreement)
+            throws ProposalException {
+        if (agreement < 1) {
+            throw new IllegalArgumentException("agreement must be at least 1: " + agreement);
+        }
+        List<Peer> candidates = new ArrayList<>(channel.getPeers(EnumSet.of(Peer.PeerRole.CHAINCODE_QUERY)));
+        if (candidates.size() < agreement) {
+            throw new ProposalException(format("%d peers required to agree but channel %s has %d query peers",
+                    agreement, channel.getName(), candidates.size()));
+        }
+        Map<Peer, Double> expected = new HashMap<>();
+        double prior = PeerStats.priorLatency();
+        for (Peer peer : candidates) {
+            expected.put(peer, PeerStats.of(peer).expectedLatency(prior));
+        }
+        candidates.sort(Comparator.comparingDouble(expected::get));
+
+        Map<ByteString, List<ProposalResponse>> results = new HashMap<>();
+        int mostAgreed = 0;
+        String lastError = null;
+        Iterator<Peer> remaining = candidates.iterator();
+        while (remaining.hasNext()) {
+            List<Peer> round = new ArrayList<>();
+            while (remaining.hasNext() && round.size() < agreement - mostAgreed) {
+                round.add(remaining.next());
+            }
+            if (round.isEmpty()) {
+                break;
+            }
+            for (Peer peer : round) {
+                PeerStats.of(peer).onStart();
+            }
+            long start = System.currentTimeMillis();
+            Collection<ProposalResponse> responses;
+            try {
+                responses = channel.queryByChaincode(request, round);
+            } catch (InvalidArgumentException | ProposalException e) {
+                responses = Collections.emptyList();
+                lastError = e.getMessage();
+            }
+            long latency = System.currentTimeMillis() - start;
+
+            Set<Peer> answered = new HashSet<>();
+            for (ProposalResponse response : responses) {
+                answered.add(response.getPeer());
+                if (response.getStatus() != ProposalResponse.Status.SUCCESS) {
+                    PeerStats.of(response.getPeer()).onFailure(latency);
+                    lastError = response.getMessage();
+                    continue;
+                }
+                PeerStats.of(response.getPeer()).onSuccess(latency);
+                List<ProposalResponse> same = results.computeIfAbsent(
+                        response.getProposalResponse().getResponse().getPayload(), k -> new ArrayList<>());
+                same.add(response);
+                mostAgreed = Math.max(mostAgreed, same.size());
+                if (same.size() >= agreement) {
+                    return same.get(0);
+                }
+            }
+            for (Peer peer : round) {
+                if (!answered.contains(peer)) {
+                    PeerStats.of(peer).onFailure(latency);
+                }
+            }
+        }
+        throw new ProposalException(format("query on channel %s failed: %d peers required to agree, at most %d did, last error: %s",
+                channel.getName(), agreement, mostAgreed, lastError));
     }
 
     public static File findFileSk(File directory) {
@@ -0,0 +1,118 @@
+package com.zbl.chain.sdk.utils;
+
+import com.zbl.chain.sdk.pojos.response.data.MerkleProof;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * SHA-256 merkle树
+ * 叶子为 SHA256(0x00 || hash)，内部节点为 SHA256(0x01 || left || right)，区分前缀防止第二原像攻击；
+ * 某层节点数为奇数时最后一个节点直接升入上一层
+ */
+public class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    /**
+     * levels.get(0)为叶子层，最后一层只有根节点
+     */
+    private final List<byte[][]> levels = new ArrayList<>();
+
+    public MerkleTree(List<String> hashes) {
+        if (hashes.isEmpty()) {
+            throw new IllegalArgumentException("merkle tree needs at least one leaf");
+        }
+        MessageDigest digest = sha256();
+        byte[][] level = new byte[hashes.size()][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = leafHash(digest, hashes.get(i));
+        }
+        levels.add(level);
+        while (level.length > 1) {
+            byte[][] parent = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < parent.length; i++) {
+                int left = i * 2;
+                parent[i] = left + 1 < level.length ? nodeHash(digest, level[left], level[left + 1]) : level[left];
+            }
+            levels.add(parent);
+            level = parent;
+        }
+    }
+
+    public int size() {
+        return levels.get(0).length;
+    }
+
+    public String getRoot() {
+        return Hex.toHexString(levels.get(levels.size() - 1)[0]);
+    }
+
+    /**
+     * 生成第index个叶子的包含证明，txID由调用方在锚定后填入
+     */
+    public MerkleProof getProof(int index) {
+        List<String> siblings = new ArrayList<>();
+        List<Boolean> leftSiblings = new ArrayList<>();
+        int position = index;
+        for (int i = 0; i < levels.size() - 1; i++) {
+            byte[][] level = levels.get(i);
+            int sibling = position ^ 1;
+            if (sibling < level.length) {
+                siblings.add(Hex.toHexString(level[sibling]));
+                leftSiblings.add(sibling < position);
+            }
+            position /= 2;
+        }
+
+        MerkleProof proof = new MerkleProof();
+        proof.setRoot(getRoot());
+        proof.setLeafIndex(index);
+        proof.setSiblings(siblings);
+        proof.setLeftSiblings(leftSiblings);
+        return proof;
+    }
+
+    /**
+     * 由hash及证明路径重新计算根节点
+     */
+    public static String computeRoot(String hash, MerkleProof proof) {
+        MessageDigest digest = sha256();
+        byte[] node = leafHash(digest, hash);
+        List<String> siblings = proof.getSiblings();
+        List<Boolean> leftSiblings = proof.getLeftSiblings();
+        if (siblings.size() != leftSiblings.size()) {
+            throw new IllegalArgumentException("malformed merkle proof");
+        }
+        for (int i = 0; i < siblings.size(); i++) {
+            byte[] sibling = Hex.decode(siblings.get(i));
+            node = leftSiblings.get(i) ? nodeHash(digest, sibling, node) : nodeHash(digest, node, sibling);
+        }
+        return Hex.toHexString(node);
+    }
+
+    private static byte[] leafHash(MessageDigest digest, String hash) {
+        digest.update(LEAF_PREFIX);
+        return digest.digest(hash.getBytes(UTF_8));
+    }
+
+    private static byte[] nodeHash(MessageDigest digest, byte[] left, byte[] right) {
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        return digest.digest(right);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.zbl.chain.sdk.utils;
 
 import com.zbl.chain.sdk.FabricUser;
-import org.apache.commons.io.IOUtils;
 import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openssl.PEMParser;
@@ -9,11 +8,13 @@ import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
 import org.hyperledger.fabric.sdk.Enrollment;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
 import java.security.Security;
 import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ProviderUserUtil {
 
@@ -21,12 +22,33 @@ public class ProviderUserUtil {
 		Security.addProvider(new BouncyCastleProvider());
 	}
 
+	/**
+	 * 已解析的用户，key为用户名、mspId、私钥和证书文件的路径及修改时间，文件更新后重新解析
+	 */
+	private static final ConcurrentHashMap<String, FabricUser> userCache = new ConcurrentHashMap<>();
+
+	/**
+	 * 获取用户，私钥和证书文件未变化时返回之前解析的同一个用户
+	 */
 	public static FabricUser getUser(String name, String mspId, File privateKeyFile, File certificateFile)
 			throws IOException, NoSuchAlgorithmException, NoSuchProviderException, InvalidKeySpecException {
+		String key = String.join("|", name, mspId, privateKeyFile.getAbsolutePath(), String.valueOf(privateKeyFile.lastModified()),
+				certificateFile.getAbsolutePath(), String.valueOf(certificateFile.lastModified()));
+		FabricUser cached = userCache.get(key);
+		if (null != cached) {
+			return cached;
+		}
+		FabricUser user = loadUser(name, mspId, privateKeyFile, certificateFile);
+		FabricUser previous = userCache.putIfAbsent(key, user);
+		return null == previous ? user : previous;
+	}
+
+	private static FabricUser loadUser(String name, String mspId, File privateKeyFile, File certificateFile)
+			throws IOException, NoSuchAlgorithmException, NoSuchProviderException, InvalidKeySpecException {
 			FabricUser sampleUser = new FabricUser(name);
 			sampleUser.setMspId(mspId);
-			String certificate = new String(IOUtils.toByteArray(new FileInputStream(certificateFile)), "UTF-8");
-			PrivateKey privateKey = getPrivateKeyFromBytes(IOUtils.toByteArray(new FileInputStream(privateKeyFile)));
+			String certificate = new String(Files.readAllBytes(certificateFile.toPath()), "UTF-8");
+			PrivateKey privateKey = getPrivateKeyFromBytes(Files.readAllBytes(privateKeyFile.toPath()));
 			sampleUser.setEnrollment(new FabricUserEnrollement(privateKey, certificate));
 			return sampleUser;
 	}
@@ -0,0 +1,84 @@
+package com.zbl.chain.sdk.crypto;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.hyperledger.fabric.sdk.security.CryptoSuite;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 签名吞吐基准：对比sdk默认CryptoSuite与FastCryptoSuite的单线程签名速度，以及FastCryptoSuite.signAll的并行速度
+ * 不随sdk发布，在测试源码目录中编译；用法：mvn test-compile 后以测试classpath运行 com.zbl.chain.sdk.crypto.SignBenchmark [签名次数，默认20000]
+ */
+public class SignBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+
+        List<byte[]> messages = new ArrayList<>(count);
+        Random random = new Random(1);
+        for (int i = 0; i < count; i++) {
+            byte[] message = new byte[512];
+            random.nextBytes(message);
+            messages.add(message);
+        }
+
+        CryptoSuite defaultSuite = CryptoSuite.Factory.getCryptoSuite();
+        FastCryptoSuite fastSuite = new FastCryptoSuite();
+        verify(keyPair, fastSuite, messages.get(0));
+
+        // 预热
+        run(defaultSuite, keyPair, messages.subList(0, Math.min(count, 2000)));
+        run(fastSuite, keyPair, messages.subList(0, Math.min(count, 2000)));
+        fastSuite.signAll(keyPair.getPrivate(), messages.subList(0, Math.min(count, 2000)));
+
+        double defaultRate = run(defaultSuite, keyPair, messages);
+        double fastRate = run(fastSuite, keyPair, messages);
+        long start = System.nanoTime();
+        fastSuite.signAll(keyPair.getPrivate(), messages);
+        double batchRate = count / ((System.nanoTime() - start) / 1e9);
+
+        System.out.println(String.format("cores: %d, signatures: %d", cores, count));
+        System.out.println(String.format("%s sign:  %.0f/s (single thread)", defaultSuite.getClass().getSimpleName(), defaultRate));
+        System.out.println(String.format("FastCryptoSuite sign:    %.0f/s (single thread)", fastRate));
+        System.out.println(String.format("FastCryptoSuite signAll: %.0f/s total, %.0f/s per core", batchRate, batchRate / cores));
+    }
+
+    private static double run(CryptoSuite suite, KeyPair keyPair, List<byte[]> messages) throws Exception {
+        long start = System.nanoTime();
+        for (byte[] message : messages) {
+            suite.sign(keyPair.getPrivate(), message);
+        }
+        return messages.size() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void verify(KeyPair keyPair, FastCryptoSuite suite, byte[] message) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            byte[] signature = suite.sign(keyPair.getPrivate(), message);
+            Signature verifier = Signature.getInstance("SHA256withECDSA");
+            verifier.initVerify(keyPair.getPublic());
+            verifier.update(message);
+            if (!verifier.verify(signature)) {
+                throw new IllegalStateException("signature verification failed");
+            }
+            BigInteger s = ((ASN1Integer) ASN1Sequence.getInstance(signature).getObjectAt(1)).getValue();
+            BigInteger order = ((ECPrivateKey) keyPair.getPrivate()).getParams().getOrder();
+            if (s.compareTo(order.shiftRight(1)) > 0) {
+                throw new IllegalStateException("signature is not low-S");
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.zbl.chain.sdk.outbox;
+
+import com.zbl.chain.sdk.pojos.payload.CreateTransPayload;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 发件箱日志的重放：写入中断的记录及其后内容丢弃，已完成的记录不再重放
+ */
+public class OutboxJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+    private static final String FIRST_SEGMENT = String.format("%020d.seg", 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysPendingEntries() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        write(dir, "a", "b");
+
+        OutboxJournal journal = new OutboxJournal(dir, SEGMENT_SIZE);
+        try {
+            assertBusinessIds(journal.getPending(), "a", "b");
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void doneEntriesAreNotReplayed() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        OutboxJournal journal = new OutboxJournal(dir, SEGMENT_SIZE);
+        OutboxJournal.Entry a = journal.enqueue(payload("a"));
+        journal.enqueue(payload("b"));
+        journal.markDone(a.getId());
+        journal.close();
+
+        journal = new OutboxJournal(dir, SEGMENT_SIZE);
+        try {
+            assertBusinessIds(journal.getPending(), "b");
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void truncatedRecordIsDiscarded() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        write(dir, "a", "b");
+        Path segment = dir.resolve(FIRST_SEGMENT);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // 截断到第二条记录中间
+            channel.truncate(secondRecordOffset(segment) + 10);
+        }
+
+        OutboxJournal journal = new OutboxJournal(dir, SEGMENT_SIZE);
+        try {
+            assertBusinessIds(journal.getPending(), "a");
+            OutboxJournal.Entry c = journal.enqueue(payload("c"));
+            assertTrue("ids must not be reused after a torn write", c.getId() > journal.getPending().get(0).getId());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void corruptedRecordStopsReplay() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        write(dir, "a", "b", "c");
+        Path segment = dir.resolve(FIRST_SEGMENT);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long offset = secondRecordOffset(segment) + 12;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, offset);
+            b.put(0, (byte) (b.get(0) ^ 0xFF));
+            b.rewind();
+            channel.write(b, offset);
+        }
+
+        OutboxJournal journal = new OutboxJournal(dir, SEGMENT_SIZE);
+        try {
+            // crc不符的记录之后的内容同样丢弃
+            assertBusinessIds(journal.getPending(), "a");
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static void write(Path dir, String... businessIds) throws Exception {
+        OutboxJournal journal = new OutboxJournal(dir, SEGMENT_SIZE);
+        try {
+            for (String businessId : businessIds) {
+                journal.enqueue(payload(businessId)).getDurable().get();
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * 记录格式：int 长度 | int crc32 | 记录体
+     */
+    private static long secondRecordOffset(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 0);
+            return 8 + length.getInt(0);
+        }
+    }
+
+    private static CreateTransPayload payload(String businessId) {
+        CreateTransPayload payload = new CreateTransPayload();
+        payload.setBusinessId(businessId);
+        payload.setHash("hash-" + businessId);
+        return payload;
+    }
+
+    private static void assertBusinessIds(List<OutboxJournal.Entry> entries, String... expected) {
+        assertEquals(expected.length, entries.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], entries.get(i).getPayload().getBusinessId());
+        }
+    }
+}